@@ -0,0 +1,54 @@
+package jug.istanbul.springboot;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Trial division against Pollard-Brent for a smooth number, a 12 digit
+ * semiprime and a 19 digit semiprime.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactorizationBenchmark {
+
+    @Param({ "9699690", "999962000357", "1000000016000000063" })
+    public String number;
+
+    private BigInteger n;
+    private Factorization trialDivision;
+    private PollardBrentFactorization pollardBrent;
+
+    @Setup
+    public void setUp() {
+        n = new BigInteger(number);
+        trialDivision = new Factorization(false);
+        pollardBrent = new PollardBrentFactorization();
+    }
+
+    @Benchmark
+    public Object trialDivision() {
+        return trialDivision.factors(n);
+    }
+
+    @Benchmark
+    public Object pollardBrent() {
+        return pollardBrent.factors(n);
+    }
+
+}
@@ -0,0 +1,104 @@
+package jug.istanbul.springboot;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Serializes the /inspect snapshot and a /gcStress shaped result map, with
+ * the indented output application.properties turns on and without it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean indent;
+
+    private RuntimeInspector inspector;
+    private GcPauseRecorder gcPauseRecorder;
+    private ObjectWriter writer;
+    private Map<String, Object> inspect;
+    private Map<String, Object> gcStress;
+
+    @Setup
+    public void setUp() throws ClassNotFoundException {
+        inspector = new RuntimeInspector(Duration.ofHours(1));
+        gcPauseRecorder = new GcPauseRecorder(new SimpleMeterRegistry());
+        System.gc();
+        writer = new ObjectMapper().writer();
+        writer = indent ? writer.with(SerializationFeature.INDENT_OUTPUT) : writer.without(SerializationFeature.INDENT_OUTPUT);
+        inspect = inspector.snapshot();
+        gcStress = gcStressResult();
+    }
+
+    @TearDown
+    public void tearDown() {
+        inspector.destroy();
+        gcPauseRecorder.destroy();
+    }
+
+    @Benchmark
+    public byte[] inspect() throws Exception {
+        return writer.writeValueAsBytes(inspect);
+    }
+
+    @Benchmark
+    public byte[] gcStress() throws Exception {
+        return writer.writeValueAsBytes(gcStress);
+    }
+
+    // Same keys and nesting as RESTController.gcStress
+    private Map<String, Object> gcStressResult() {
+        Map<String, Object> gcStats = new HashMap<>();
+        for (var gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, Object> gcInfo = new HashMap<>();
+            gcInfo.put("collections", gcBean.getCollectionCount());
+            gcInfo.put("timeMs", gcBean.getCollectionTime());
+            gcStats.put(gcBean.getName(), gcInfo);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("iterations", 10000);
+        result.put("arraySize", 1000);
+        result.put("executionTimeMs", 1234L);
+        result.put("totalAllocatedBytes", 52_428_800L);
+        result.put("allocatedMB", 50L);
+        result.put("memoryUsedBeforeMB", 120L);
+        result.put("memoryUsedAfterMB", 180L);
+        result.put("longLivedObjectsCount", 120);
+        result.put("includeStrings", true);
+        result.put("includeCollections", true);
+        result.put("includeLargeObjects", true);
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("allocationsPerSecond", 8103.7);
+        result.put("gcStats", gcStats);
+        result.put("gcPauses", gcPauseRecorder.snapshot());
+        return result;
+    }
+
+}
@@ -0,0 +1,71 @@
+package jug.istanbul.springboot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The blocked flat-array multiply against the naive jagged i-j-k loop the
+ * matmul kernel used before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixKernelBenchmark {
+
+    @Param({ "50", "256", "512" })
+    public int size;
+
+    private MatrixKernel.Buffers buffers;
+    private double[][] a;
+    private double[][] b;
+    private double[][] c;
+
+    @Setup
+    public void setUp() {
+        buffers = MatrixKernel.buffers(size);
+        a = new double[size][size];
+        b = new double[size][size];
+        c = new double[size][size];
+        for (var i = 0; i < size; i++) {
+            for (var j = 0; j < size; j++) {
+                a[i][j] = buffers.a[i * size + j];
+                b[i][j] = buffers.b[i * size + j];
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] blocked() {
+        MatrixKernel.multiply(buffers.a, buffers.b, buffers.c, size);
+        return buffers.c;
+    }
+
+    @Benchmark
+    public double[][] naive() {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double sum = 0;
+                for (int k = 0; k < size; k++) {
+                    sum += a[i][k] * b[k][j];
+                }
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+}
@@ -0,0 +1,109 @@
+package jug.istanbul.springboot;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The shared Primality test against the two implementations it replaced,
+ * PrimeNumberFinder's trial division up to n and the controller's 6k +- 1
+ * isPrimeFast, both kept here verbatim as baselines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimalityBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({ "100000", "2000000" })
+    public int bound;
+
+    private int[] numbers;
+
+    @Setup
+    public void setUp() {
+        var random = new SplittableRandom(42);
+        numbers = new int[BATCH];
+        for (var i = 0; i < BATCH; i++) {
+            numbers[i] = random.nextInt(bound / 2, bound);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int primality() {
+        var primes = 0;
+        for (var number : numbers) {
+            if (Primality.isPrime(number)) {
+                primes++;
+            }
+        }
+        return primes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int oldIsPrimeFast() {
+        var primes = 0;
+        for (var number : numbers) {
+            if (isPrimeFast(number)) {
+                primes++;
+            }
+        }
+        return primes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int oldIsPrime() {
+        var primes = 0;
+        for (var number : numbers) {
+            if (isPrime(number)) {
+                primes++;
+            }
+        }
+        return primes;
+    }
+
+    private static boolean isPrime(int number) {
+        if (number <= 1) {
+            return false;
+        }
+        for (int i = 2; i < number; i++) {
+            if (number % i == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPrimeFast(long number) {
+        if (number <= 1) return false;
+        if (number <= 3) return true;
+        if (number % 2 == 0 || number % 3 == 0) return false;
+
+        for (long i = 5; i * i <= number; i += 6) {
+            if (number % i == 0 || number % (i + 2) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,67 @@
+package jug.istanbul.springboot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The boxed List<Integer> generator against the chunked streaming generator
+ * behind /generateRandomNumbers, writing to a discarding stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RandomNumbersBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int amount;
+
+    private PrimeNumberFinder finder;
+    private ForkJoinPool pool;
+    private RandomNumberGenerator generator;
+
+    @Setup
+    public void setUp() {
+        finder = new PrimeNumberFinder();
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        generator = new RandomNumberGenerator(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object generateUnsortedRandomNumbers() {
+        return finder.generateUnsortedRandomNumbers(amount, 1_000_000);
+    }
+
+    @Benchmark
+    public void streamJson() throws IOException {
+        generator.write(amount, 1_000_000, 42, RandomNumberGenerator.Format.JSON, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void streamBinary() throws IOException {
+        generator.write(amount, 1_000_000, 42, RandomNumberGenerator.Format.BINARY, OutputStream.nullOutputStream());
+    }
+
+}
@@ -0,0 +1,46 @@
+package jug.istanbul.springboot;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One operation of each stress kernel, so the per-kernel rates reported by
+ * /cpuStress can be checked against a steady-state measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WorkloadKernelBenchmark {
+
+    @Param({ "trig", "integer", "prime", "fibonacci", "string-hash", "matmul" })
+    public String kernel;
+
+    private WorkloadKernel workloadKernel;
+
+    @Setup
+    public void setUp() {
+        workloadKernel = new WorkloadKernels(List.of()).kernels().get(kernel);
+    }
+
+    @Benchmark
+    public long run() {
+        return workloadKernel.run(ThreadLocalRandom.current());
+    }
+
+}
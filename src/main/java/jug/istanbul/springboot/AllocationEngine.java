@@ -0,0 +1,402 @@
+package jug.istanbul.springboot;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Background heap allocation at a steady, configurable rate, the load that
+ * GC comparisons start from. Objects are sized from a distribution; a share
+ * of them survives for a fixed lifetime, the rest is garbage straight away.
+ * The profile can be changed and the engine started or stopped at runtime.
+ *
+ * Backpressure comes from MemoryPoolMXBean collection usage thresholds (usage
+ * thresholds where a pool has none) on the heap pools with a known maximum,
+ * set only while the engine runs and watched through notifications and a
+ * check on every tick. Once a pool crosses memory-load.backpressure-threshold
+ * of its maximum, all retained objects are dropped and new ones are not
+ * retained until the pool is back under 90% of the threshold. Allocation
+ * itself goes on, so the GC keeps running and the achieved rate stays
+ * comparable.
+ */
+@Service
+public class AllocationEngine implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllocationEngine.class);
+
+    private static final int MB = 1024 * 1024;
+    private static final int MAX_OBJECT_BYTES = 64 * MB;
+    private static final long TICK_MILLIS = 10;
+    // Catch up after a stall by at most this much, instead of bursting
+    private static final long MAX_BACKLOG_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double RESUME_FRACTION = 0.9;
+
+    /**
+     * Object sizes: fixed:1MB, uniform:1KB-64KB, or exponential:16KB for an
+     * exponential distribution with that mean, capped at 64 MB.
+     */
+    public record SizeDistribution(String spec, String kind, int first, int second) {
+
+        public static SizeDistribution parse(String spec) {
+            var separator = spec.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected fixed:<size>, uniform:<min>-<max> or exponential:<mean>, got " + spec);
+            }
+            var kind = spec.substring(0, separator).trim();
+            var sizes = spec.substring(separator + 1).trim();
+            return switch (kind) {
+                case "fixed", "exponential" -> new SizeDistribution(spec, kind, bytes(sizes), 0);
+                case "uniform" -> {
+                    var range = sizes.split("-");
+                    if (range.length != 2) {
+                        throw new IllegalArgumentException("Expected uniform:<min>-<max>, got " + spec);
+                    }
+                    var min = bytes(range[0]);
+                    var max = bytes(range[1]);
+                    if (min > max) {
+                        throw new IllegalArgumentException("Minimum size exceeds maximum in " + spec);
+                    }
+                    yield new SizeDistribution(spec, kind, min, max);
+                }
+                default -> throw new IllegalArgumentException("Unknown size distribution '" + kind + "', expected fixed, uniform or exponential");
+            };
+        }
+
+        int sample(ThreadLocalRandom random) {
+            return switch (kind) {
+                case "uniform" -> random.nextInt(first, second + 1);
+                case "exponential" -> (int) Math.min(MAX_OBJECT_BYTES, Math.max(1, -first * Math.log(1 - random.nextDouble())));
+                default -> first;
+            };
+        }
+
+        private static int bytes(String size) {
+            var bytes = DataSize.parse(size.trim()).toBytes();
+            if (bytes < 1 || bytes > MAX_OBJECT_BYTES) {
+                throw new IllegalArgumentException("Object size " + size + " must be within [1B, 64MB]");
+            }
+            return (int) bytes;
+        }
+    }
+
+    public record Profile(double rateMbPerSecond, SizeDistribution objectSize, double survivalRatio, Duration lifetime) {
+
+        public Profile {
+            if (!(rateMbPerSecond > 0) || rateMbPerSecond > 10_000) {
+                throw new IllegalArgumentException("Rate must be within (0, 10000] MB/s");
+            }
+            if (!(survivalRatio >= 0 && survivalRatio <= 1)) {
+                throw new IllegalArgumentException("Survival ratio must be within [0, 1]");
+            }
+            if (lifetime.isNegative()) {
+                throw new IllegalArgumentException("Lifetime must not be negative");
+            }
+        }
+    }
+
+    private record Retained(byte[] data, long expiresAt) {
+    }
+
+    private final ScheduledExecutorService ticker;
+    // Thresholds are JVM-wide, so they are only set while running and the previous values put back on stop
+    private final Map<MemoryPoolMXBean, Long> watchedPools = new LinkedHashMap<>();
+    private final NotificationEmitter memoryEmitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+    private final NotificationListener thresholdListener = this::thresholdExceeded;
+    private final double backpressureThreshold;
+
+    // Guarded by this, touched by the ticker thread and by reconfiguration
+    private final ArrayDeque<Retained> retained = new ArrayDeque<>();
+    private Profile profile;
+    private boolean running;
+    private long startedAt;
+    private long stoppedAt;
+    private long lastTick;
+    private double owedBytes;
+    private long allocatedBytes;
+    private long allocatedObjects;
+    private long backpressureEvents;
+
+    // Written under the lock, read lock-free by gauges and the threshold listener
+    private volatile int retainedCount;
+    private volatile long retainedBytes;
+    private volatile boolean backpressure;
+
+    // Sink for a byte of every allocation, keeps escape analysis from removing them
+    private volatile byte sink;
+
+    public AllocationEngine(MeterRegistry registry, @Value("${memory-load.enabled:false}") boolean enabled,
+            @Value("${memory-load.rate-mb-per-second:10}") double rateMbPerSecond, @Value("${memory-load.object-size:fixed:1MB}") String objectSize,
+            @Value("${memory-load.survival-ratio:1.0}") double survivalRatio, @Value("${memory-load.lifetime:5s}") Duration lifetime,
+            @Value("${memory-load.backpressure-threshold:0.8}") double backpressureThreshold) {
+        if (!(backpressureThreshold > 0 && backpressureThreshold <= 1)) {
+            throw new IllegalArgumentException("memory-load.backpressure-threshold must be within (0, 1]");
+        }
+        this.profile = new Profile(rateMbPerSecond, SizeDistribution.parse(objectSize), survivalRatio, lifetime);
+        this.backpressureThreshold = backpressureThreshold;
+
+        registry.gauge("memory.list.size", this, engine -> engine.retainedCount);
+        Gauge.builder("memory.load.retained", this, engine -> engine.retainedBytes)
+                .description("Bytes the allocation engine currently keeps alive")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("memory.load.rate.target", this, engine -> engine.running() ? engine.profile().rateMbPerSecond() : 0)
+                .description("Requested allocation rate in MB/s")
+                .register(registry);
+        Gauge.builder("memory.load.rate.achieved", this, AllocationEngine::achievedMbPerSecond)
+                .description("Allocation rate in MB/s achieved since the engine was last started")
+                .register(registry);
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "memory-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        if (enabled) {
+            start(profile);
+        }
+    }
+
+    public synchronized Profile profile() {
+        return profile;
+    }
+
+    public synchronized boolean running() {
+        return running;
+    }
+
+    /**
+     * Starts allocating with the given profile, or switches a running engine
+     * over to it. Counters restart so the achieved rate refers to this profile.
+     * A new lifetime drops what is retained, expiry relies on every retained
+     * object sharing one lifetime.
+     */
+    public synchronized void start(Profile newProfile) {
+        if (running && !newProfile.lifetime().equals(profile.lifetime())) {
+            release();
+        }
+        if (!running) {
+            watchHeapPools();
+        }
+        profile = newProfile;
+        running = true;
+        startedAt = System.nanoTime();
+        lastTick = startedAt;
+        owedBytes = 0;
+        allocatedBytes = 0;
+        allocatedObjects = 0;
+        logger.info("Allocation engine started: {} MB/s, sizes {}, survival {} for {}", newProfile.rateMbPerSecond(), newProfile.objectSize().spec(),
+                newProfile.survivalRatio(), newProfile.lifetime());
+    }
+
+    /**
+     * Stops allocating and drops everything retained.
+     */
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            stoppedAt = System.nanoTime();
+            release();
+            unwatchHeapPools();
+            backpressure = false;
+            logger.info("Allocation engine stopped after {} MB", allocatedBytes / MB);
+        }
+    }
+
+    public synchronized Map<String, Object> report() {
+        var report = new LinkedHashMap<String, Object>();
+        report.put("running", running);
+        report.put("requestedMbPerSecond", profile.rateMbPerSecond());
+        report.put("achievedMbPerSecond", achievedMbPerSecond());
+        report.put("objectSize", profile.objectSize().spec());
+        report.put("survivalRatio", profile.survivalRatio());
+        report.put("lifetimeMs", profile.lifetime().toMillis());
+        report.put("elapsedMs", elapsedNanos() / 1_000_000);
+        report.put("allocatedMB", (double) allocatedBytes / MB);
+        report.put("allocatedObjects", allocatedObjects);
+        report.put("retainedObjects", retainedCount);
+        report.put("retainedMB", (double) retainedBytes / MB);
+        report.put("backpressure", backpressure);
+        report.put("backpressureEvents", backpressureEvents);
+        report.put("backpressureThreshold", backpressureThreshold);
+        report.put("watchedPools", watchedPools.keySet().stream().map(MemoryPoolMXBean::getName).toList());
+        return report;
+    }
+
+    @Override
+    public void destroy() {
+        ticker.shutdownNow();
+        stop();
+    }
+
+    private synchronized void tick() {
+        try {
+            var now = System.nanoTime();
+            expire(now);
+            // Notifications are delivered asynchronously, the flags are already set when the collection ends
+            if (!backpressure && thresholdExceeded()) {
+                engageBackpressure();
+            } else if (backpressure && belowResumeLevel()) {
+                backpressure = false;
+                logger.info("Heap usage is back under {} of the threshold, retaining objects again", RESUME_FRACTION);
+            }
+            if (!running) {
+                return;
+            }
+            // Bytes due since the last tick, with the backlog after a stall bounded instead of burst out
+            var rate = profile.rateMbPerSecond() * MB / 1e9;
+            owedBytes = Math.min(owedBytes + rate * (now - lastTick), rate * MAX_BACKLOG_NANOS);
+            lastTick = now;
+            var random = ThreadLocalRandom.current();
+            var expiresAt = now + profile.lifetime().toNanos();
+            while (owedBytes > 0) {
+                var data = new byte[profile.objectSize().sample(random)];
+                data[data.length - 1] = 1;
+                sink = data[0];
+                owedBytes -= data.length;
+                allocatedBytes += data.length;
+                allocatedObjects++;
+                if (!backpressure && random.nextDouble() < profile.survivalRatio()) {
+                    retained.addLast(new Retained(data, expiresAt));
+                    retainedBytes += data.length;
+                }
+            }
+            retainedCount = retained.size();
+        } catch (RuntimeException e) {
+            // A failing tick must not cancel the schedule
+            logger.warn("Allocation engine tick failed", e);
+        } catch (OutOfMemoryError e) {
+            // Last resort when a single tick outruns the thresholds, which should have engaged first
+            engageBackpressure();
+            logger.warn("Allocation engine ran out of heap before backpressure engaged", e);
+        }
+    }
+
+    private void expire(long now) {
+        // All objects share one lifetime, start() drops them when it changes, so the oldest always expires first
+        for (var head = retained.peekFirst(); head != null && head.expiresAt() - now <= 0; head = retained.peekFirst()) {
+            retained.removeFirst();
+            retainedBytes -= head.data().length;
+        }
+        retainedCount = retained.size();
+    }
+
+    private void release() {
+        retained.clear();
+        retainedBytes = 0;
+        retainedCount = 0;
+    }
+
+    // Also read by the gauge from the metrics thread, hence the lock
+    private synchronized double achievedMbPerSecond() {
+        var nanos = elapsedNanos();
+        return nanos > 0 ? allocatedBytes * 1e9 / nanos / MB : 0;
+    }
+
+    private long elapsedNanos() {
+        if (startedAt == 0) {
+            return 0;
+        }
+        return (running ? System.nanoTime() : stoppedAt) - startedAt;
+    }
+
+    private void watchHeapPools() {
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            var max = pool.getUsage().getMax();
+            if (pool.getType() != MemoryType.HEAP || max <= 0) {
+                continue;
+            }
+            var threshold = (long) (max * backpressureThreshold);
+            // Usage after a collection is live data, current usage also counts garbage not yet collected
+            if (pool.isCollectionUsageThresholdSupported()) {
+                watchedPools.put(pool, pool.getCollectionUsageThreshold());
+                pool.setCollectionUsageThreshold(threshold);
+            } else if (pool.isUsageThresholdSupported()) {
+                watchedPools.put(pool, pool.getUsageThreshold());
+                pool.setUsageThreshold(threshold);
+            }
+        }
+        memoryEmitter.addNotificationListener(thresholdListener, null, null);
+    }
+
+    private void unwatchHeapPools() {
+        try {
+            memoryEmitter.removeNotificationListener(thresholdListener);
+        } catch (ListenerNotFoundException e) {
+            // Already gone
+        }
+        watchedPools.forEach((pool, previous) -> {
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(previous);
+            } else {
+                pool.setUsageThreshold(previous);
+            }
+        });
+        watchedPools.clear();
+    }
+
+    private boolean thresholdExceeded() {
+        for (var pool : watchedPools.keySet()) {
+            if (pool.isCollectionUsageThresholdSupported() ? pool.isCollectionUsageThresholdExceeded() : pool.isUsageThresholdExceeded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean belowResumeLevel() {
+        for (var pool : watchedPools.keySet()) {
+            var collection = pool.isCollectionUsageThresholdSupported();
+            var used = collection ? pool.getCollectionUsage().getUsed() : pool.getUsage().getUsed();
+            var threshold = collection ? pool.getCollectionUsageThreshold() : pool.getUsageThreshold();
+            if (used > threshold * RESUME_FRACTION) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void engageBackpressure() {
+        if (!backpressure) {
+            backpressureEvents++;
+            logger.warn("Heap pool crossed {} of its maximum, dropping {} retained objects ({} MB)", backpressureThreshold, retainedCount,
+                    retainedBytes / MB);
+        }
+        backpressure = true;
+        release();
+    }
+
+    // Runs on a JMX notification thread
+    private void thresholdExceeded(Notification notification, Object handback) {
+        var type = notification.getType();
+        if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type) && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            return;
+        }
+        engageBackpressure();
+    }
+
+}
@@ -0,0 +1,28 @@
+package jug.istanbul.springboot;
+
+/**
+ * Encodes non-negative numbers as ASCII digits straight into a byte buffer,
+ * for streaming endpoints that write millions of numbers without creating a
+ * String per value.
+ */
+final class AsciiDigits {
+
+    // Long.MAX_VALUE has 19 digits, plus room for a separator
+    static final int MAX_LENGTH = 20;
+
+    private AsciiDigits() {
+    }
+
+    static int append(byte[] buffer, int position, long value) {
+        var digits = 1;
+        for (var rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (var i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+}
@@ -0,0 +1,178 @@
+package jug.istanbul.springboot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Derives pool sizes from what the container actually grants instead of
+ * hardcoded thread counts. The CPU budget is the cgroup quota capped by
+ * availableProcessors() (which already honours -XX:ActiveProcessorCount),
+ * scaled by concurrency.target-utilization. CPU-bound pools get one thread
+ * per whole CPU of that budget. Pools whose threads also wait get
+ * budget * (1 + W/C) threads, Goetz's formula and Little's Law applied to the
+ * measured wait/compute ratio, with the budget shrunk by the share of CFS
+ * periods that were throttled in the last sampling interval. With
+ * concurrency.apply-request-threads on, {@link TomcatWorkerPool} applies the
+ * request thread recommendation for the latest resize interval to Tomcat's
+ * worker pool.
+ */
+@Component
+public class ConcurrencyAdvisor {
+
+    private final CpuThrottlingMonitor throttling;
+    private final EndpointProfiler profiler;
+    private final double targetUtilization;
+    private final int requestThreads;
+    // Set by TomcatWorkerPool whenever it resizes the worker pool
+    private volatile int appliedRequestThreads;
+
+    public ConcurrencyAdvisor(CpuThrottlingMonitor throttling, EndpointProfiler profiler,
+            @Value("${concurrency.target-utilization:1.0}") double targetUtilization,
+            @Value("${server.tomcat.threads.max:200}") int requestThreads) {
+        if (targetUtilization <= 0 || targetUtilization > 1) {
+            throw new IllegalArgumentException("concurrency.target-utilization must be within (0, 1]");
+        }
+        this.throttling = throttling;
+        this.profiler = profiler;
+        this.targetUtilization = targetUtilization;
+        this.requestThreads = requestThreads;
+        this.appliedRequestThreads = requestThreads;
+    }
+
+    /**
+     * CPUs this JVM can actually use: the CFS quota when there is one, never
+     * more than availableProcessors().
+     */
+    public double effectiveCpus() {
+        var processors = Runtime.getRuntime().availableProcessors();
+        var quota = throttling.quotaCpus();
+        return quota > 0 ? Math.min(quota, processors) : processors;
+    }
+
+    /**
+     * Threads for a pool that never blocks, such as the factorization pool.
+     * Rounds down so a 0.5 or 2.5 CPU quota is not oversubscribed, but never
+     * goes below one.
+     */
+    public int cpuBoundThreads() {
+        return Math.max(1, (int) Math.floor(effectiveCpus() * targetUtilization));
+    }
+
+    /**
+     * Threads for a pool whose tasks spend waitToCompute units of time off CPU
+     * for every unit on it.
+     */
+    public int threadsFor(double waitToCompute) {
+        return Math.max(1, (int) Math.ceil(usableCpus() * (1 + waitToCompute)));
+    }
+
+    public EndpointProfiler.Totals requestTotals() {
+        return profiler.totals();
+    }
+
+    /**
+     * Request threads for the wait/compute ratio of the requests in window,
+     * the difference of two {@link #requestTotals()}, or empty when none of
+     * them used CPU.
+     */
+    public OptionalInt recommendedRequestThreads(EndpointProfiler.Totals window) {
+        if (window.requests() <= 0 || window.cpuNanos() <= 0) {
+            return OptionalInt.empty();
+        }
+        var waitToCompute = (double) Math.max(0, window.wallNanos() - window.cpuNanos()) / window.cpuNanos();
+        return OptionalInt.of(threadsFor(waitToCompute));
+    }
+
+    void requestThreadsApplied(int threads) {
+        appliedRequestThreads = threads;
+    }
+
+    public Map<String, Object> explain(Map<String, Integer> currentPoolSizes) {
+        var report = new LinkedHashMap<String, Object>();
+        var sample = throttling.latest();
+
+        var inputs = new LinkedHashMap<String, Object>();
+        inputs.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        inputs.put("activeProcessorCount", activeProcessorCountFlag());
+        inputs.put("cgroupVersion", throttling.cgroupVersion());
+        inputs.put("quotaCpus", sample.quotaCpus());
+        inputs.put("throttleRatio", sample.throttleRatio());
+        inputs.put("targetUtilization", targetUtilization);
+        inputs.put("effectiveCpus", effectiveCpus());
+        inputs.put("usableCpus", usableCpus());
+        report.put("inputs", inputs);
+
+        var pools = new LinkedHashMap<String, Object>();
+        for (var pool : currentPoolSizes.entrySet()) {
+            pools.put(pool.getKey(), advice(pool.getValue(), cpuBoundThreads(),
+                    "CPU-bound: floor(effectiveCpus " + round(effectiveCpus()) + " * targetUtilization " + targetUtilization + "), at least 1"));
+        }
+
+        var endpoints = new ArrayList<Map<String, Object>>();
+        long totalRequests = 0;
+        for (var profile : profiler.profiles()) {
+            var endpoint = new LinkedHashMap<String, Object>();
+            endpoint.put("endpoint", profile.endpoint());
+            endpoint.put("requests", profile.requests());
+            endpoint.put("meanWallMs", round(profile.meanWallMs()));
+            endpoint.put("meanCpuMs", round(profile.meanCpuMs()));
+            endpoint.put("waitToCompute", round(profile.waitToCompute()));
+            endpoint.put("recommendedConcurrency", threadsFor(profile.waitToCompute()));
+            endpoints.add(endpoint);
+            totalRequests += profile.requests();
+        }
+        var waitToCompute = requestWaitToCompute();
+        if (waitToCompute >= 0) {
+            var requestAdvice = advice(appliedRequestThreads, threadsFor(waitToCompute),
+                    "ceil(usableCpus " + round(usableCpus()) + " * (1 + W/C " + round(waitToCompute) + ")) over all " + totalRequests + " profiled requests");
+            requestAdvice.put("ceiling", requestThreads);
+            pools.put("requestThreads", requestAdvice);
+        }
+        report.put("pools", pools);
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    // W/C over all profiled requests weighted by their count, -1 without CPU time to divide by
+    private double requestWaitToCompute() {
+        double totalWallMs = 0;
+        double totalCpuMs = 0;
+        for (var profile : profiler.profiles()) {
+            totalWallMs += profile.meanWallMs() * profile.requests();
+            totalCpuMs += profile.meanCpuMs() * profile.requests();
+        }
+        return totalCpuMs > 0 ? Math.max(0, totalWallMs - totalCpuMs) / totalCpuMs : -1;
+    }
+
+    // A throttled period means the quota ran out before the period ended, so count only the unthrottled share
+    private double usableCpus() {
+        return effectiveCpus() * targetUtilization * (1 - throttling.latest().throttleRatio());
+    }
+
+    private static LinkedHashMap<String, Object> advice(int current, int recommended, String reasoning) {
+        var advice = new LinkedHashMap<String, Object>();
+        advice.put("current", current);
+        advice.put("recommended", recommended);
+        advice.put("reasoning", reasoning);
+        return advice;
+    }
+
+    private static String activeProcessorCountFlag() {
+        return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(arg -> arg.startsWith("-XX:ActiveProcessorCount="))
+                .map(arg -> arg.substring("-XX:ActiveProcessorCount=".length()))
+                .findFirst()
+                .orElse("JVM Default");
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+}
@@ -0,0 +1,123 @@
+package jug.istanbul.springboot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * One long-lived pool for every /cpuStress call, so concurrent calls share
+ * the CPU budget instead of each spinning up its own threads. Admission is
+ * bounded: a call is accepted only if all of its tasks fit in the free
+ * threads plus cpu-stress.queue-capacity queued tasks, otherwise it is
+ * rejected straight away with an estimate of when to retry.
+ */
+@Component
+public class CpuStressExecutor implements DisposableBean {
+
+    /**
+     * Thrown when a call does not fit into the pool and its queue.
+     */
+    public static final class SaturatedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        SaturatedException(long retryAfterSeconds) {
+            super("CPU stress pool is saturated, retry in " + retryAfterSeconds + "s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long retryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Per-task timings, queue delay measured from admission to the task
+     * starting on a pool thread.
+     */
+    public record TaskResult(Map<String, Object> result, long queueDelayNanos, long startNanos, long endNanos) {
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final Semaphore admission;
+    private final int capacity;
+    // Sum of the durations of admitted tasks that have not finished yet, for Retry-After
+    private final AtomicLong admittedTaskSeconds = new AtomicLong();
+
+    public CpuStressExecutor(ConcurrencyAdvisor concurrencyAdvisor, @Value("${cpu-stress.pool-size:0}") int poolSize,
+            @Value("${cpu-stress.queue-capacity:32}") int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("cpu-stress.queue-capacity must not be negative");
+        }
+        var threads = poolSize > 0 ? poolSize : concurrencyAdvisor.cpuBoundThreads();
+        var threadNumber = new AtomicInteger();
+        // The semaphore bounds the queue, so it never holds more than queueCapacity tasks
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "cpu-stress-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.capacity = threads + queueCapacity;
+        this.admission = new Semaphore(capacity);
+    }
+
+    public int poolSize() {
+        return pool.getMaximumPoolSize();
+    }
+
+    /**
+     * The most tasks a single call may ask for.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Runs work(0) .. work(tasks - 1) on the shared pool, or throws
+     * {@link SaturatedException} right away when they do not all fit.
+     */
+    public CompletableFuture<List<TaskResult>> submit(int tasks, int durationSeconds, IntFunction<Map<String, Object>> work) {
+        if (!admission.tryAcquire(tasks)) {
+            var backlogSeconds = (double) admittedTaskSeconds.get() / pool.getMaximumPoolSize();
+            throw new SaturatedException(Math.max(1, (long) Math.ceil(backlogSeconds)));
+        }
+        admittedTaskSeconds.addAndGet((long) tasks * durationSeconds);
+
+        var admitted = System.nanoTime();
+        var futures = new ArrayList<CompletableFuture<TaskResult>>(tasks);
+        for (var task = 0; task < tasks; task++) {
+            var taskId = task;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                var start = System.nanoTime();
+                try {
+                    var result = work.apply(taskId);
+                    return new TaskResult(result, start - admitted, start, System.nanoTime());
+                } finally {
+                    admittedTaskSeconds.addAndGet(-durationSeconds);
+                    admission.release();
+                }
+            }, pool));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+}
@@ -0,0 +1,280 @@
+package jug.istanbul.springboot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Samples the container's CFS bandwidth statistics from inside the JVM, the
+ * in-process counterpart of local-demo/cpu-throttling-monitor.sh. Reads
+ * cpu.stat and cpu.max on cgroup v2, or cpu.stat and cpu.cfs_quota_us /
+ * cpu.cfs_period_us on cgroup v1, every cpu-throttling.interval. Each interval's
+ * throttle ratio and throttled time are published as gauges. When
+ * cpu-throttling.csv-path is set, every sample is also appended there in the
+ * same CSV schema the script produces.
+ */
+@Component
+public class CpuThrottlingMonitor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CpuThrottlingMonitor.class);
+
+    static final String CSV_HEADER = "timestamp,seconds,cpu_percent,throttled_usec,throttled_periods,nr_periods";
+
+    // Same shape as `date -Iseconds`
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxx", Locale.ROOT);
+
+    private static final Path CGROUP_V2 = Path.of("/sys/fs/cgroup");
+    private static final Path[] CGROUP_V1 = { Path.of("/sys/fs/cgroup/cpu"), Path.of("/sys/fs/cgroup/cpu,cpuacct") };
+
+    /**
+     * One sampling interval. The cgroup counters are cumulative, the ratio and
+     * throttled time cover only the interval, and all cgroup values are -1 when
+     * no cgroup CPU controller is visible.
+     */
+    public record Sample(OffsetDateTime timestamp, long seconds, double cpuPercent, long nrPeriods, long nrThrottled, long throttledUsec,
+            double throttleRatio, double throttledMs, double quotaCpus) {
+    }
+
+    private record CpuStat(long nrPeriods, long nrThrottled, long throttledUsec) {
+    }
+
+    private final com.sun.management.OperatingSystemMXBean osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private final String cgroupVersion;
+    private final Path statFile;
+    private final ScheduledExecutorService sampler;
+    private final BufferedWriter csv;
+    private final long startNanos = System.nanoTime();
+
+    private long lastNanos = startNanos;
+    private long lastCpuNanos = osBean.getProcessCpuTime();
+    private CpuStat lastStat;
+    private volatile Sample latest;
+
+    public CpuThrottlingMonitor(MeterRegistry registry, @Value("${cpu-throttling.interval:5s}") Duration interval,
+            @Value("${cpu-throttling.csv-path:}") String csvPath) throws IOException {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("cpu-throttling.interval must be positive");
+        }
+        if (Files.isReadable(CGROUP_V2.resolve("cpu.stat")) && Files.exists(CGROUP_V2.resolve("cgroup.controllers"))) {
+            cgroupVersion = "v2";
+            statFile = CGROUP_V2.resolve("cpu.stat");
+        } else {
+            Path v1 = null;
+            for (var candidate : CGROUP_V1) {
+                if (Files.isReadable(candidate.resolve("cpu.stat"))) {
+                    v1 = candidate.resolve("cpu.stat");
+                    break;
+                }
+            }
+            cgroupVersion = v1 != null ? "v1" : "none";
+            statFile = v1;
+        }
+        if (statFile == null) {
+            logger.info("No cgroup cpu.stat found, CPU throttling metrics will be empty");
+        }
+        lastStat = readStat();
+        latest = new Sample(OffsetDateTime.now(), 0, 0, stat(CpuStat::nrPeriods), stat(CpuStat::nrThrottled), stat(CpuStat::throttledUsec), 0, 0, quotaCpus());
+
+        csv = csvPath.isBlank() ? null : openCsv(Path.of(csvPath));
+
+        Gauge.builder("cgroup.cpu.throttle.ratio", this, m -> m.latest.throttleRatio())
+                .description("Share of CFS periods in the last interval in which the container was throttled")
+                .register(registry);
+        Gauge.builder("cgroup.cpu.throttled.interval", this, m -> m.latest.throttledMs())
+                .description("Time the container spent throttled during the last interval")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("cgroup.cpu.quota", this, m -> m.latest.quotaCpus())
+                .description("CFS quota in CPUs, -1 when unlimited")
+                .register(registry);
+        FunctionCounter.builder("cgroup.cpu.periods", this, m -> m.latest.nrPeriods())
+                .description("Elapsed CFS enforcement periods")
+                .register(registry);
+        FunctionCounter.builder("cgroup.cpu.throttled.periods", this, m -> m.latest.nrThrottled())
+                .description("CFS periods in which the container was throttled")
+                .register(registry);
+        FunctionCounter.builder("cgroup.cpu.throttled.time", this, m -> m.latest.throttledUsec() / 1_000_000.0)
+                .description("Total time the container spent throttled")
+                .baseUnit("seconds")
+                .register(registry);
+
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "cpu-throttling-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var millis = interval.toMillis();
+        sampler.scheduleAtFixedRate(this::sample, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public Sample latest() {
+        return latest;
+    }
+
+    public String cgroupVersion() {
+        return cgroupVersion;
+    }
+
+    /**
+     * CPUs granted by the CFS quota, or -1 when there is none.
+     */
+    public double quotaCpus() {
+        try {
+            if ("v2".equals(cgroupVersion)) {
+                var max = Files.readString(CGROUP_V2.resolve("cpu.max")).trim().split("\\s+");
+                return "max".equals(max[0]) ? -1 : Double.parseDouble(max[0]) / Double.parseDouble(max[1]);
+            }
+            if ("v1".equals(cgroupVersion)) {
+                var dir = statFile.getParent();
+                var quota = Long.parseLong(Files.readString(dir.resolve("cpu.cfs_quota_us")).trim());
+                var period = Long.parseLong(Files.readString(dir.resolve("cpu.cfs_period_us")).trim());
+                return quota <= 0 ? -1 : (double) quota / period;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read the cgroup CPU quota", e);
+        }
+        return -1;
+    }
+
+    public Map<String, Object> report() {
+        var sample = latest;
+        var report = new LinkedHashMap<String, Object>();
+        report.put("cgroupVersion", cgroupVersion);
+        report.put("timestamp", TIMESTAMP.format(sample.timestamp()));
+        report.put("quotaCpus", sample.quotaCpus());
+        report.put("cpuPercent", sample.cpuPercent());
+        report.put("throttleRatio", sample.throttleRatio());
+        report.put("throttledMsInInterval", sample.throttledMs());
+        report.put("nrPeriods", sample.nrPeriods());
+        report.put("nrThrottled", sample.nrThrottled());
+        report.put("throttledUsec", sample.throttledUsec());
+        return report;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        sampler.shutdownNow();
+        if (csv != null) {
+            synchronized (csv) {
+                csv.close();
+            }
+        }
+    }
+
+    private void sample() {
+        try {
+            var now = System.nanoTime();
+            var cpuNanos = osBean.getProcessCpuTime();
+            var stat = readStat();
+
+            // 100% means one full core, as in docker stats
+            var cpuPercent = (cpuNanos - lastCpuNanos) * 100.0 / Math.max(1, now - lastNanos);
+            double ratio = 0;
+            double throttledMs = 0;
+            if (stat != null && lastStat != null) {
+                var periods = stat.nrPeriods() - lastStat.nrPeriods();
+                ratio = periods > 0 ? (double) (stat.nrThrottled() - lastStat.nrThrottled()) / periods : 0;
+                throttledMs = (stat.throttledUsec() - lastStat.throttledUsec()) / 1000.0;
+            }
+            lastNanos = now;
+            lastCpuNanos = cpuNanos;
+            lastStat = stat;
+
+            var sample = new Sample(OffsetDateTime.now(), TimeUnit.NANOSECONDS.toSeconds(now - startNanos), cpuPercent, stat(CpuStat::nrPeriods),
+                    stat(CpuStat::nrThrottled), stat(CpuStat::throttledUsec), ratio, throttledMs, quotaCpus());
+            latest = sample;
+            if (csv != null) {
+                writeCsv(sample);
+            }
+        } catch (IOException | RuntimeException e) {
+            // An exception would cancel the periodic task
+            logger.warn("Failed to sample CPU throttling", e);
+        }
+    }
+
+    private long stat(ToLongFunction<CpuStat> field) {
+        return lastStat != null ? field.applyAsLong(lastStat) : -1;
+    }
+
+    private CpuStat readStat() {
+        if (statFile == null) {
+            return null;
+        }
+        try {
+            long nrPeriods = 0, nrThrottled = 0, throttledUsec = 0;
+            for (var line : Files.readAllLines(statFile)) {
+                var fields = line.split(" ");
+                if (fields.length != 2) {
+                    continue;
+                }
+                var value = Long.parseLong(fields[1]);
+                switch (fields[0]) {
+                    case "nr_periods" -> nrPeriods = value;
+                    case "nr_throttled" -> nrThrottled = value;
+                    case "throttled_usec" -> throttledUsec = value;
+                    // cgroup v1 reports nanoseconds
+                    case "throttled_time" -> throttledUsec = value / 1000;
+                    default -> {
+                    }
+                }
+            }
+            return new CpuStat(nrPeriods, nrThrottled, throttledUsec);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read {}", statFile, e);
+            return null;
+        }
+    }
+
+    private static BufferedWriter openCsv(Path path) throws IOException {
+        var parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var fresh = !Files.exists(path) || Files.size(path) == 0;
+        var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (fresh) {
+            writer.write(CSV_HEADER);
+            writer.newLine();
+            writer.flush();
+        }
+        logger.info("Writing CPU throttling samples to {}", path);
+        return writer;
+    }
+
+    private void writeCsv(Sample sample) throws IOException {
+        var known = sample.nrPeriods() >= 0;
+        var line = TIMESTAMP.format(sample.timestamp()) + ',' + sample.seconds() + ',' + String.format(Locale.ROOT, "%.2f", sample.cpuPercent()) + ','
+                + (known ? Long.toString(sample.throttledUsec()) : "") + ',' + (known ? Long.toString(sample.nrThrottled()) : "") + ','
+                + (known ? Long.toString(sample.nrPeriods()) : "");
+        synchronized (csv) {
+            csv.write(line);
+            csv.newLine();
+            csv.flush();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package jug.istanbul.springboot;
+
+import java.time.Duration;
+
+/**
+ * Cheap time budget based on {@link System#nanoTime()}, meant to be polled
+ * from inside hot loops without allocating.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+    private volatile boolean cancelled;
+
+    private Deadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos(), true);
+    }
+
+    /**
+     * Returns a deadline timeoutMs from now, or no deadline when timeoutMs is null.
+     */
+    public static Deadline afterMillis(Long timeoutMs) {
+        return timeoutMs == null ? NONE : after(Duration.ofMillis(Math.max(0, timeoutMs)));
+    }
+
+    /**
+     * Returns a fresh deadline timeoutMs from now, or an unbounded one when
+     * timeoutMs is null, that can be expired early with {@link #cancel()}.
+     */
+    public static Deadline cancellable(Long timeoutMs) {
+        return timeoutMs == null ? new Deadline(0, false) : after(Duration.ofMillis(Math.max(0, timeoutMs)));
+    }
+
+    /**
+     * Makes the deadline expire immediately, so work polling it stops at its
+     * next check. Must not be called on the shared {@link #none()} instance.
+     */
+    public void cancel() {
+        if (this == NONE) {
+            throw new IllegalStateException("The shared unbounded deadline cannot be cancelled");
+        }
+        cancelled = true;
+    }
+
+    public boolean expired() {
+        return cancelled || bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Same as {@link #expired()} for callers that already read
+     * {@link System#nanoTime()}, so a hot loop needs one clock read per step.
+     */
+    public boolean expired(long nanoTime) {
+        return cancelled || bounded && nanoTime - deadlineNanos >= 0;
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public long remainingNanos() {
+        if (cancelled) {
+            return 0;
+        }
+        return bounded ? Math.max(0, deadlineNanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+}
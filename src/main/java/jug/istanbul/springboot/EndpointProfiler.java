@@ -0,0 +1,136 @@
+package jug.istanbul.springboot;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Measures, per endpoint, how much of each request's wall time the request
+ * thread spends on CPU. Only request-thread CPU counts: work handed to the
+ * factorization pool or a timer shows up as waiting, which is exactly what
+ * matters when sizing the request thread pool. Async requests are measured
+ * across both dispatches.
+ */
+@Component
+public class EndpointProfiler implements AsyncHandlerInterceptor {
+
+    private static final String TIMING = EndpointProfiler.class.getName() + ".timing";
+
+    public record Profile(String endpoint, long requests, double meanWallMs, double meanCpuMs) {
+
+        /**
+         * W/C from Goetz's pool sizing formula, the time a request spends off
+         * CPU per unit of time on it.
+         */
+        public double waitToCompute() {
+            return meanCpuMs > 0 ? Math.max(0, meanWallMs - meanCpuMs) / meanCpuMs : 0;
+        }
+    }
+
+    /**
+     * Sums over every endpoint, subtract two to get a window.
+     */
+    public record Totals(long requests, long wallNanos, long cpuNanos) {
+
+        public Totals minus(Totals earlier) {
+            return new Totals(requests - earlier.requests, wallNanos - earlier.wallNanos, cpuNanos - earlier.cpuNanos);
+        }
+    }
+
+    private static final class Timing {
+        private final long startNanos = System.nanoTime();
+        private long cpuNanos;
+        private long cpuStart = -1;
+    }
+
+    private static final class Stats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+    }
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!cpuTimeSupported || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        var timing = (Timing) request.getAttribute(TIMING);
+        if (timing == null || request.getDispatcherType() != DispatcherType.ASYNC) {
+            timing = new Timing();
+            request.setAttribute(TIMING, timing);
+        }
+        timing.cpuStart = threadBean.getCurrentThreadCpuTime();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        var timing = (Timing) request.getAttribute(TIMING);
+        if (timing != null) {
+            stopCpu(timing);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        var timing = (Timing) request.getAttribute(TIMING);
+        var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (timing == null || pattern == null) {
+            return;
+        }
+        stopCpu(timing);
+        var endpoint = stats.computeIfAbsent(request.getMethod() + " " + pattern, key -> new Stats());
+        endpoint.requests.increment();
+        endpoint.wallNanos.add(System.nanoTime() - timing.startNanos);
+        endpoint.cpuNanos.add(timing.cpuNanos);
+    }
+
+    public List<Profile> profiles() {
+        var profiles = new ArrayList<Profile>(stats.size());
+        stats.forEach((endpoint, endpointStats) -> {
+            var requests = endpointStats.requests.sum();
+            if (requests > 0) {
+                profiles.add(new Profile(endpoint, requests, endpointStats.wallNanos.sum() / 1e6 / requests, endpointStats.cpuNanos.sum() / 1e6 / requests));
+            }
+        });
+        profiles.sort((a, b) -> Long.compare(b.requests(), a.requests()));
+        return profiles;
+    }
+
+    public Totals totals() {
+        long requests = 0;
+        long wallNanos = 0;
+        long cpuNanos = 0;
+        for (var endpointStats : stats.values()) {
+            requests += endpointStats.requests.sum();
+            wallNanos += endpointStats.wallNanos.sum();
+            cpuNanos += endpointStats.cpuNanos.sum();
+        }
+        return new Totals(requests, wallNanos, cpuNanos);
+    }
+
+    private void stopCpu(Timing timing) {
+        if (timing.cpuStart >= 0) {
+            timing.cpuNanos += threadBean.getCurrentThreadCpuTime() - timing.cpuStart;
+            timing.cpuStart = -1;
+        }
+    }
+
+}
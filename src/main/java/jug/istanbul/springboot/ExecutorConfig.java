@@ -0,0 +1,18 @@
+package jug.istanbul.springboot;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Work-stealing pool shared by the CPU-bound factorization endpoints, sized by the advisor unless overridden
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool factorizationPool(ConcurrencyAdvisor concurrencyAdvisor, @Value("${concurrency.factorization-pool-size:0}") int poolSize) {
+        return new ForkJoinPool(poolSize > 0 ? poolSize : concurrencyAdvisor.cpuBoundThreads());
+    }
+
+}
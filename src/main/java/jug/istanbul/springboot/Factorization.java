@@ -31,18 +31,49 @@ public class Factorization {
     }
 
     public List<Long> factors(BigInteger n) {
-        var results = new ArrayList<Long>(5);
+        var found = new ArrayList<BigInteger>(5);
+        factor(n, Deadline.none(), found);
+        var results = new ArrayList<Long>(found.size());
+        for (var factor : found) {
+            results.add(factor.longValue());
+        }
+        if (logging) {
+            logger.info("Returning factors: " + results);
+        }
+        return Collections.unmodifiableList(results);
+    }
 
+    /**
+     * Trial division that gives up once the deadline passes and reports the
+     * factors found so far together with the unfactored cofactor.
+     */
+    public FactorizationResult factors(BigInteger n, Deadline deadline) {
+        var results = new ArrayList<BigInteger>(5);
+        var cofactor = factor(n, deadline, results);
+        if (logging) {
+            logger.info("Returning factors: {} (cofactor {})", results, cofactor);
+        }
+        return new FactorizationResult(Collections.unmodifiableList(results), cofactor);
+    }
+
+    private BigInteger factor(BigInteger n, Deadline deadline, List<BigInteger> results) {
         while (n.mod(BigInteger.valueOf(2)).intValue() == 0) {
             if (logging) {
                 logger.info("One factor found: " + n);
             }
 
-            results.add(2L);
+            results.add(BigInteger.TWO);
             n = n.divide(BigInteger.valueOf(2L));
         }
 
         for (var i = 3; i <= n.sqrt().longValue(); i += 2) {
+            // Poll the clock every 1024 candidates, i is odd so (i & 2047) hits 1 once per round
+            if ((i & 2047) == 1 && deadline.expired()) {
+                if (logging) {
+                    logger.info("Deadline reached at candidate {}, cofactor left: {}", i, n);
+                }
+                return n;
+            }
             if (logging) {
                 logger.info("Testing other factors with sqrt: " + n);
             }
@@ -50,7 +81,7 @@ public class Factorization {
                 if (logging) {
                     logger.info("Number 'i' is a factor: " + i);
                 }
-                results.add((long) i);
+                results.add(BigInteger.valueOf(i));
                 if (logging) {
                     logger.info("Now divide 'n' for 'i': {}/{}", n, i);
                 }
@@ -61,12 +92,9 @@ public class Factorization {
             if (logging) {
                 logger.info("The last factor is: " + n);
             }
-            results.add(n.longValue());
+            results.add(n);
         }
-        if (logging) {
-            logger.info("Returning factors: " + results);
-        }
-        return Collections.unmodifiableList(results);
+        return BigInteger.ONE;
     }
 
 }
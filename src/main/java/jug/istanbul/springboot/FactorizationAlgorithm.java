@@ -0,0 +1,8 @@
+package jug.istanbul.springboot;
+
+public enum FactorizationAlgorithm {
+    // Plain trial division up to sqrt(n), kept for the CPU demos
+    TRIAL_DIVISION,
+    // Miller-Rabin primality checks plus Pollard-Brent rho splitting
+    POLLARD_BRENT;
+}
@@ -0,0 +1,16 @@
+package jug.istanbul.springboot;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Prime factors found so far plus the part of the input that is still
+ * unfactored, which is 1 once the factorization is complete.
+ */
+public record FactorizationResult(List<BigInteger> factors, BigInteger cofactor) {
+
+    public boolean complete() {
+        return BigInteger.ONE.equals(cofactor);
+    }
+
+}
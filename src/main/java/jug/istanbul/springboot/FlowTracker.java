@@ -0,0 +1,176 @@
+package jug.istanbul.springboot;
+
+/**
+ * Arrivals, departures and residence times of one queueing station (an
+ * endpoint, Tomcat's task queue, its workers) over a sliding window, so the
+ * three sides of Little's Law can be measured independently. L is the exact
+ * time average of the in-flight count: every change integrates the count
+ * since the previous one. Recording only locks one of several stripes, so
+ * the pool being measured is not serialized by its own instrumentation. The
+ * window slides in steps of one {@link #rotate()}.
+ */
+final class FlowTracker {
+
+    /**
+     * Window statistics: L is meanInFlight, λ arrivalRate and W
+     * meanResidenceMs, so predictedInFlight is λW.
+     */
+    public record Stats(double windowSeconds, long inFlight, double meanInFlight, double arrivalRate, double completionRate, double meanResidenceMs,
+            double predictedInFlight) {
+
+        /**
+         * L / λW, close to 1 once the window is long compared to W.
+         */
+        public double littlesLawRatio() {
+            return predictedInFlight > 0 ? meanInFlight / predictedInFlight : 0;
+        }
+    }
+
+    private record Totals(long nanos, long arrivals, long completions, long residenceNanos, long inFlightNanos) {
+
+        private Totals plus(Totals other) {
+            return new Totals(nanos, arrivals + other.arrivals, completions + other.completions, residenceNanos + other.residenceNanos,
+                    inFlightNanos + other.inFlightNanos);
+        }
+    }
+
+    /**
+     * One stripe of the counters, picked by the recording thread. A request
+     * may depart on another stripe than it arrived on, so a stripe's
+     * in-flight count can go negative; the integrals still add up because
+     * every stripe is integrated up to the same instant before they are
+     * summed.
+     */
+    private static final class Stripe {
+        private long inFlight;
+        private long arrivals;
+        private long completions;
+        private long residenceNanos;
+        // Integral of inFlight over time, up to lastChange
+        private long inFlightNanos;
+        private long lastChange;
+
+        private Stripe(long now) {
+            lastChange = now;
+        }
+
+        private synchronized void arrive(long countedFrom, long now) {
+            advance(now);
+            inFlightNanos += now - countedFrom;
+            inFlight++;
+            arrivals++;
+        }
+
+        private synchronized void depart(long arrivalNanos, long now) {
+            advance(now);
+            inFlight--;
+            completions++;
+            residenceNanos += now - arrivalNanos;
+        }
+
+        private synchronized void abandon(long countedFrom, long now) {
+            advance(now);
+            inFlightNanos -= now - countedFrom;
+            inFlight--;
+            arrivals--;
+        }
+
+        private synchronized Totals totals(long now) {
+            advance(now);
+            return new Totals(now, arrivals, completions, residenceNanos, inFlightNanos);
+        }
+
+        private synchronized long inFlight() {
+            return inFlight;
+        }
+
+        private void advance(long now) {
+            // Arrivals seen late can carry a timestamp before lastChange, never move backwards
+            if (now > lastChange) {
+                inFlightNanos += inFlight * (now - lastChange);
+                lastChange = now;
+            }
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final Totals[] history;
+    private final Totals initial;
+    private int next;
+    private int size;
+    // Start of the current interval, time before it belongs to intervals already rotated out
+    private volatile long intervalStart;
+
+    /**
+     * @param intervals number of rotations the window spans
+     */
+    FlowTracker(int intervals) {
+        var now = System.nanoTime();
+        // Power of two at least twice the CPUs, so threads rarely share a stripe
+        stripes = new Stripe[Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1))];
+        for (var i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(now);
+        }
+        history = new Totals[intervals];
+        initial = new Totals(now, 0, 0, 0, 0);
+        intervalStart = now;
+    }
+
+    /**
+     * Counts an arrival at arrivalNanos that is only seen now, e.g. a request
+     * whose endpoint is known once it has been mapped. Time in flight before
+     * the current interval started is not counted towards L.
+     */
+    void arrive(long arrivalNanos, long now) {
+        stripe().arrive(Math.max(arrivalNanos, intervalStart), now);
+    }
+
+    void depart(long arrivalNanos, long now) {
+        stripe().depart(arrivalNanos, now);
+    }
+
+    /**
+     * Takes back an arrival that never got in, e.g. a rejected task.
+     */
+    void abandon(long arrivalNanos, long now) {
+        stripe().abandon(Math.max(arrivalNanos, intervalStart), now);
+    }
+
+    synchronized void rotate() {
+        var now = System.nanoTime();
+        history[next] = totals(now);
+        next = (next + 1) % history.length;
+        size = Math.min(size + 1, history.length);
+        intervalStart = now;
+    }
+
+    synchronized Stats stats() {
+        var now = totals(System.nanoTime());
+        var start = size < history.length ? initial : history[next];
+        var nanos = Math.max(1, now.nanos() - start.nanos());
+        var seconds = nanos / 1e9;
+        var arrivalRate = (now.arrivals() - start.arrivals()) / seconds;
+        var departed = now.completions() - start.completions();
+        var meanResidenceNanos = departed > 0 ? (double) (now.residenceNanos() - start.residenceNanos()) / departed : 0;
+        long inFlight = 0;
+        for (var stripe : stripes) {
+            inFlight += stripe.inFlight();
+        }
+        return new Stats(seconds, inFlight, (double) (now.inFlightNanos() - start.inFlightNanos()) / nanos, arrivalRate, departed / seconds,
+                meanResidenceNanos / 1e6, arrivalRate * meanResidenceNanos / 1e9);
+    }
+
+    private Stripe stripe() {
+        var id = Thread.currentThread().getId();
+        return stripes[(int) (id ^ (id >>> 16)) & (stripes.length - 1)];
+    }
+
+    private Totals totals(long now) {
+        var totals = new Totals(now, 0, 0, 0, 0);
+        for (var stripe : stripes) {
+            totals = totals.plus(stripe.totals(now));
+        }
+        return totals;
+    }
+
+}
@@ -0,0 +1,184 @@
+package jug.istanbul.springboot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SynchronizedHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Records every collection reported through GC notifications into an
+ * HdrHistogram per collector, cause and kind. Stop-the-world pauses and
+ * concurrent cycles (ZGC and Shenandoah "Cycles" beans, G1 concurrent marking)
+ * are kept apart, since only the former stall application threads. The same
+ * values feed gc.pause distribution summaries.
+ */
+@Component
+public class GcPauseRecorder implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(GcPauseRecorder.class);
+
+    // Durations are reported in whole milliseconds, anything past an hour is clamped
+    private static final long HIGHEST_TRACKABLE_MS = TimeUnit.HOURS.toMillis(1);
+
+    public record Key(String collector, String cause, boolean concurrent) {
+    }
+
+    public record PauseStats(String collector, String cause, String type, long count, long p50Ms, long p99Ms, long p999Ms, long maxMs, long totalMs) {
+    }
+
+    /**
+     * Histogram state captured by {@link #mark()}, to report only the
+     * collections that happened after it.
+     */
+    public final class Window {
+        private final Map<Key, Histogram> start;
+
+        private Window(Map<Key, Histogram> start) {
+            this.start = start;
+        }
+
+        public Map<String, Object> delta() {
+            var delta = new HashMap<Key, Histogram>();
+            histograms.forEach((key, histogram) -> {
+                var current = histogram.copy();
+                var before = start.get(key);
+                if (before != null) {
+                    current.subtract(before);
+                }
+                if (current.getTotalCount() > 0) {
+                    delta.put(key, current);
+                }
+            });
+            return report(delta);
+        }
+    }
+
+    private final Map<Key, SynchronizedHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<Key, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<NotificationEmitter, NotificationListener> listeners = new HashMap<>();
+    private final MeterRegistry registry;
+
+    public GcPauseRecorder(MeterRegistry registry) {
+        this.registry = registry;
+        for (var gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gcBean instanceof NotificationEmitter emitter) {
+                NotificationListener listener = this::handle;
+                emitter.addNotificationListener(listener, null, null);
+                listeners.put(emitter, listener);
+            }
+        }
+    }
+
+    public Window mark() {
+        var start = new HashMap<Key, Histogram>();
+        histograms.forEach((key, histogram) -> start.put(key, histogram.copy()));
+        return new Window(start);
+    }
+
+    /**
+     * Everything recorded since startup, plus totals for pauses and concurrent time.
+     */
+    public Map<String, Object> snapshot() {
+        var all = new HashMap<Key, Histogram>();
+        histograms.forEach((key, histogram) -> all.put(key, histogram.copy()));
+        return report(all);
+    }
+
+    @Override
+    public void destroy() {
+        listeners.forEach((emitter, listener) -> {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        });
+    }
+
+    private void handle(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        var key = new Key(info.getGcName(), info.getGcCause(), isConcurrent(info));
+        var durationMs = Math.min(info.getGcInfo().getDuration(), HIGHEST_TRACKABLE_MS);
+        try {
+            histograms.computeIfAbsent(key, k -> new SynchronizedHistogram(HIGHEST_TRACKABLE_MS, 3)).recordValue(durationMs);
+            summaries.computeIfAbsent(key, this::summary).record(durationMs);
+        } catch (RuntimeException e) {
+            // Never let a bookkeeping failure propagate into the JMX notification thread
+            logger.warn("Failed to record GC notification for {}", key, e);
+        }
+    }
+
+    private DistributionSummary summary(Key key) {
+        return DistributionSummary.builder("gc.pause")
+                .description("Collection durations from GC notifications")
+                .baseUnit("milliseconds")
+                .tag("gc", key.collector())
+                .tag("cause", key.cause())
+                .tag("type", type(key))
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(registry);
+    }
+
+    private static boolean isConcurrent(GarbageCollectionNotificationInfo info) {
+        var name = info.getGcName();
+        return name.endsWith(" Cycles") || name.contains("Concurrent") || info.getGcAction().contains("concurrent");
+    }
+
+    private static String type(Key key) {
+        return key.concurrent() ? "concurrent" : "pause";
+    }
+
+    private static Map<String, Object> report(Map<Key, Histogram> histograms) {
+        var collectors = new ArrayList<PauseStats>(histograms.size());
+        long pauseTotal = 0;
+        long pauseMax = 0;
+        long concurrentTotal = 0;
+        for (var entry : histograms.entrySet()) {
+            var key = entry.getKey();
+            var histogram = entry.getValue();
+            var total = (long) (histogram.getMean() * histogram.getTotalCount());
+            collectors.add(new PauseStats(key.collector(), key.cause(), type(key), histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMaxValue(), total));
+            if (key.concurrent()) {
+                concurrentTotal += total;
+            } else {
+                pauseTotal += total;
+                pauseMax = Math.max(pauseMax, histogram.getMaxValue());
+            }
+        }
+        collectors.sort((a, b) -> Long.compare(b.totalMs(), a.totalMs()));
+
+        var report = new LinkedHashMap<String, Object>();
+        report.put("pauseTotalMs", pauseTotal);
+        report.put("pauseMaxMs", pauseMax);
+        report.put("concurrentTotalMs", concurrentTotal);
+        report.put("collectors", List.copyOf(collectors));
+        return report;
+    }
+
+}
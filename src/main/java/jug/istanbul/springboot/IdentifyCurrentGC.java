@@ -1,5 +1,6 @@
 package jug.istanbul.springboot;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.management.ManagementFactory;
@@ -27,10 +28,19 @@ public class IdentifyCurrentGC {
     }
 
     private final Class<?> VMOptionClazz, HotSpotDiagnosticMXBeanClazz;
+    // Resolved once here instead of for every flag lookup
+    private final MethodHandle getVMOption, getValue;
 
     public IdentifyCurrentGC() throws ClassNotFoundException {
         VMOptionClazz = Class.forName("com.sun.management.VMOption");
         HotSpotDiagnosticMXBeanClazz = Class.forName("com.sun.management.HotSpotDiagnosticMXBean");
+        try {
+            var publicLookup = MethodHandles.publicLookup();
+            getVMOption = publicLookup.findVirtual(HotSpotDiagnosticMXBeanClazz, "getVMOption", MethodType.methodType(VMOptionClazz, String.class));
+            getValue = publicLookup.findVirtual(VMOptionClazz, "getValue", MethodType.methodType(String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public GCType identifyGC() {
@@ -57,14 +67,8 @@ public class IdentifyCurrentGC {
         // initialize hotspot diagnostic MBean
         initHotspotMBean();
         try {
-            var publicLookup = MethodHandles.publicLookup();
-            var mt = MethodType.methodType(VMOptionClazz, String.class);
-            var getVMOption = publicLookup.findVirtual(HotSpotDiagnosticMXBeanClazz, "getVMOption", mt);
             var vmOption = getVMOption.invokeWithArguments(hotspotMBean, vmOptionName);
-
-            var mt2 = MethodType.methodType(String.class);
-            var mh2 = publicLookup.findVirtual(VMOptionClazz, "getValue", mt2);
-            return (String) mh2.invokeWithArguments(vmOption);
+            return (String) getValue.invokeWithArguments(vmOption);
         } catch (IllegalArgumentException e) {
             if (e.getMessage().contains("does not exist")) {
                 return null;
@@ -0,0 +1,260 @@
+package jug.istanbul.springboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Records the server-side service time of every request, from the first
+ * filter to the response being complete, into an HdrHistogram Recorder per
+ * "METHOD pattern". Recording is lock-free; every latency.interval the
+ * interval histograms are rotated into a ring covering latency.window and into
+ * a histogram since startup. Async requests are recorded when their
+ * AsyncContext completes. Values are kept in microseconds and reported in
+ * milliseconds, the unit wrk -L and the HdrHistogram plotter use.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LatencyRecorder extends OncePerRequestFilter implements DisposableBean {
+
+    /**
+     * Request attribute holding the System.nanoTime() the request entered this filter.
+     */
+    static final String START_NANOS = LatencyRecorder.class.getName() + ".startNanos";
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MS = 1000.0;
+
+    public record LatencyStats(String endpoint, long count, double meanMs, double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+
+    /**
+     * One endpoint's histograms. Only the recorder is touched on the request
+     * path, everything else is guarded by the instance lock.
+     */
+    private static final class Endpoint {
+        // Packed histograms grow with the buckets actually used, a few KB for a typical endpoint
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS, true);
+        private final Histogram sinceStartup = new PackedHistogram(SIGNIFICANT_DIGITS);
+        private final Histogram[] ring;
+        private Histogram current = new PackedHistogram(SIGNIFICANT_DIGITS);
+        private Histogram interval = recorder.getIntervalHistogram();
+        private int oldest;
+
+        private Endpoint(int intervals) {
+            ring = new Histogram[intervals];
+            for (var i = 0; i < intervals; i++) {
+                ring[i] = new PackedHistogram(SIGNIFICANT_DIGITS);
+            }
+        }
+
+        // Moves what was recorded since the last call into the current interval
+        private synchronized void flush() {
+            interval = recorder.getIntervalHistogram(interval);
+            current.add(interval);
+            sinceStartup.add(interval);
+        }
+
+        private synchronized void rotate() {
+            flush();
+            var expired = ring[oldest];
+            ring[oldest] = current;
+            oldest = (oldest + 1) % ring.length;
+            expired.reset();
+            current = expired;
+        }
+
+        private synchronized Histogram rolling() {
+            flush();
+            var rolling = current.copy();
+            for (var histogram : ring) {
+                rolling.add(histogram);
+            }
+            return rolling;
+        }
+
+        private synchronized Histogram sinceStartup() {
+            flush();
+            return sinceStartup.copy();
+        }
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Duration interval;
+    private final Duration window;
+    private final int intervals;
+    private final ScheduledExecutorService rotator;
+
+    public LatencyRecorder(@Value("${latency.interval:5s}") Duration interval, @Value("${latency.window:1m}") Duration window) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("latency.interval must be positive");
+        }
+        if (window.compareTo(interval) < 0) {
+            throw new IllegalArgumentException("latency.window must be at least latency.interval");
+        }
+        this.interval = interval;
+        this.window = window;
+        // The current, partly filled interval is always included on top of the ring
+        this.intervals = (int) Math.max(1, window.toNanos() / interval.toNanos() - 1);
+
+        rotator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "latency-rotator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var millis = interval.toMillis();
+        rotator.scheduleAtFixedRate(() -> endpoints.values().forEach(Endpoint::rotate), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var start = System.nanoTime();
+        request.setAttribute(START_NANOS, start);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            // Set by the initial dispatch, also for requests that go async
+            var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                var endpoint = endpoints.computeIfAbsent(request.getMethod() + " " + pattern, key -> new Endpoint(intervals));
+                if (request.isAsyncStarted()) {
+                    request.getAsyncContext().addListener(new CompletionListener(endpoint, start));
+                } else {
+                    record(endpoint, start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rolling window and since-startup statistics of every endpoint seen so
+     * far. With expectedIntervalMs set, each histogram is corrected for
+     * coordinated omission as if requests were meant to arrive that often.
+     */
+    public Map<String, Object> summary(Long expectedIntervalMs) {
+        var rolling = new ArrayList<LatencyStats>(endpoints.size());
+        var sinceStartup = new ArrayList<LatencyStats>(endpoints.size());
+        endpoints.forEach((name, endpoint) -> {
+            rolling.add(stats(name, corrected(endpoint.rolling(), expectedIntervalMs)));
+            sinceStartup.add(stats(name, corrected(endpoint.sinceStartup(), expectedIntervalMs)));
+        });
+        rolling.sort((a, b) -> Long.compare(b.count(), a.count()));
+        sinceStartup.sort((a, b) -> Long.compare(b.count(), a.count()));
+
+        var summary = new LinkedHashMap<String, Object>();
+        summary.put("intervalMs", interval.toMillis());
+        summary.put("windowMs", window.toMillis());
+        summary.put("expectedIntervalMs", expectedIntervalMs);
+        summary.put("rolling", List.copyOf(rolling));
+        summary.put("sinceStartup", List.copyOf(sinceStartup));
+        return summary;
+    }
+
+    /**
+     * Rolling window statistics of one endpoint, or null when it has not been
+     * called yet.
+     */
+    public LatencyStats rolling(String endpoint) {
+        var state = endpoints.get(endpoint);
+        return state != null ? stats(endpoint, state.rolling()) : null;
+    }
+
+    /**
+     * The endpoint's percentile distribution in HdrHistogram's .hgrm text
+     * format, in milliseconds, or null for an endpoint that has not been
+     * called yet.
+     */
+    public String percentileDistribution(String endpoint, boolean rolling, Long expectedIntervalMs) {
+        var state = endpoints.get(endpoint);
+        if (state == null) {
+            return null;
+        }
+        var histogram = corrected(rolling ? state.rolling() : state.sinceStartup(), expectedIntervalMs);
+        var out = new ByteArrayOutputStream();
+        try (var printStream = new PrintStream(out, false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(printStream, 5, MICROS_PER_MS);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void destroy() {
+        rotator.shutdownNow();
+    }
+
+    private static void record(Endpoint endpoint, long startNanos) {
+        endpoint.recorder.recordValue(Math.max(0, (System.nanoTime() - startNanos) / 1_000));
+    }
+
+    private static Histogram corrected(Histogram histogram, Long expectedIntervalMs) {
+        if (expectedIntervalMs == null || expectedIntervalMs <= 0) {
+            return histogram;
+        }
+        return histogram.copyCorrectedForCoordinatedOmission(expectedIntervalMs * 1_000);
+    }
+
+    private static LatencyStats stats(String endpoint, Histogram histogram) {
+        return new LatencyStats(endpoint, histogram.getTotalCount(), histogram.getMean() / MICROS_PER_MS,
+                histogram.getValueAtPercentile(50) / MICROS_PER_MS, histogram.getValueAtPercentile(90) / MICROS_PER_MS,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MS, histogram.getValueAtPercentile(99.9) / MICROS_PER_MS,
+                histogram.getMaxValue() / MICROS_PER_MS);
+    }
+
+    private static final class CompletionListener implements AsyncListener {
+        private final Endpoint endpoint;
+        private final long startNanos;
+
+        private CompletionListener(Endpoint endpoint, long startNanos) {
+            this.endpoint = endpoint;
+            this.startNanos = startNanos;
+        }
+
+        // Timeouts and errors are followed by onComplete as well
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record(endpoint, startNanos);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+}
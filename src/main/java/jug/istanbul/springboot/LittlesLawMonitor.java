@@ -0,0 +1,195 @@
+package jug.istanbul.springboot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Measures L, λ and W per endpoint over latency.window, each on its own: L
+ * as the time-averaged number of requests in flight, λ from arrivals and W
+ * from residence times measured from {@link LatencyRecorder}'s filter. The
+ * same is done for Tomcat's task queue and workers via
+ * {@link TomcatWorkerPool}. Comparing L with λW validates the measurements,
+ * and the queue tells whether requests are waiting for a worker rather than
+ * being worked on.
+ */
+@Component
+public class LittlesLawMonitor implements AsyncHandlerInterceptor, DisposableBean {
+
+    private static final String ARRIVAL = LittlesLawMonitor.class.getName() + ".arrival";
+
+    // On average at least one socket waits for a worker
+    private static final double QUEUEING_MEAN_LENGTH = 1.0;
+    // Share of the worker pool busy on average before it counts as saturated
+    private static final double SATURATED_UTILIZATION = 0.9;
+
+    private record Arrival(FlowTracker flow, long nanos) {
+    }
+
+    private final Map<String, FlowTracker> endpoints = new ConcurrentHashMap<>();
+    private final TomcatWorkerPool tomcatWorkerPool;
+    private final LatencyRecorder latencyRecorder;
+    private final MeterRegistry registry;
+    private final int intervals;
+    private final ScheduledExecutorService rotator;
+
+    public LittlesLawMonitor(TomcatWorkerPool tomcatWorkerPool, LatencyRecorder latencyRecorder, MeterRegistry registry,
+            @Value("${latency.interval:5s}") Duration interval, @Value("${latency.window:1m}") Duration window) {
+        this.tomcatWorkerPool = tomcatWorkerPool;
+        this.latencyRecorder = latencyRecorder;
+        this.registry = registry;
+        this.intervals = (int) Math.max(1, window.toNanos() / interval.toNanos());
+
+        registerGauges("littles.law.tomcat", tomcatWorkerPool.queue(), Tags.of("stage", "queue"));
+        registerGauges("littles.law.tomcat", tomcatWorkerPool.workers(), Tags.of("stage", "workers"));
+
+        rotator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "littles-law-rotator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var millis = interval.toMillis();
+        rotator.scheduleAtFixedRate(() -> {
+            endpoints.values().forEach(FlowTracker::rotate);
+            tomcatWorkerPool.queue().rotate();
+            tomcatWorkerPool.workers().rotate();
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // An async dispatch continues the request counted by the initial one
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC || request.getAttribute(ARRIVAL) != null) {
+            return true;
+        }
+        var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            return true;
+        }
+        var now = System.nanoTime();
+        var start = request.getAttribute(LatencyRecorder.START_NANOS) instanceof Long nanos ? nanos : now;
+        var flow = endpoints.computeIfAbsent(request.getMethod() + " " + pattern, this::register);
+        flow.arrive(start, now);
+        request.setAttribute(ARRIVAL, new Arrival(flow, start));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ARRIVAL) instanceof Arrival arrival) {
+            request.removeAttribute(ARRIVAL);
+            arrival.flow().depart(arrival.nanos(), System.nanoTime());
+        }
+    }
+
+    public Map<String, Object> report() {
+        var endpointReports = new ArrayList<Map<String, Object>>(endpoints.size());
+        endpoints.forEach((endpoint, flow) -> {
+            var report = new LinkedHashMap<String, Object>();
+            report.put("endpoint", endpoint);
+            report.putAll(flowReport(flow.stats()));
+            var latency = latencyRecorder.rolling(endpoint);
+            if (latency != null) {
+                report.put("p50ResidenceMs", latency.p50Ms());
+                report.put("p99ResidenceMs", latency.p99Ms());
+            }
+            endpointReports.add(report);
+        });
+        endpointReports.sort((a, b) -> Double.compare((double) b.get("arrivalRate"), (double) a.get("arrivalRate")));
+
+        var report = new LinkedHashMap<String, Object>();
+        report.put("endpoints", endpointReports);
+        report.put("tomcat", tomcatReport());
+        return report;
+    }
+
+    @Override
+    public void destroy() {
+        rotator.shutdownNow();
+    }
+
+    private Map<String, Object> tomcatReport() {
+        var tomcat = new LinkedHashMap<String, Object>();
+        tomcat.put("instrumented", tomcatWorkerPool.instrumented());
+        if (!tomcatWorkerPool.instrumented()) {
+            return tomcat;
+        }
+        var queue = tomcatWorkerPool.queue().stats();
+        var workers = tomcatWorkerPool.workers().stats();
+        var maxThreads = tomcatWorkerPool.maxThreads();
+        var utilization = workers.meanInFlight() / maxThreads;
+        tomcat.put("maxThreads", maxThreads);
+        tomcat.put("poolSize", tomcatWorkerPool.poolSize());
+        tomcat.put("busyThreads", tomcatWorkerPool.busyThreads());
+        tomcat.put("meanUtilization", utilization);
+        tomcat.put("queue", flowReport(queue));
+        tomcat.put("workers", flowReport(workers));
+        String regime;
+        if (queue.meanInFlight() >= QUEUEING_MEAN_LENGTH) {
+            regime = "queueing: requests wait " + String.format(Locale.ROOT, "%.1f", queue.meanResidenceMs()) + " ms on average for a worker";
+        } else if (utilization >= SATURATED_UTILIZATION) {
+            regime = "saturated: the worker pool is nearly always fully busy, queueing is imminent";
+        } else {
+            regime = "not queueing: residence time is dominated by processing";
+        }
+        tomcat.put("regime", regime);
+        return tomcat;
+    }
+
+    private static LinkedHashMap<String, Object> flowReport(FlowTracker.Stats stats) {
+        var report = new LinkedHashMap<String, Object>();
+        report.put("windowSeconds", stats.windowSeconds());
+        report.put("inFlight", stats.inFlight());
+        report.put("meanInFlight", stats.meanInFlight());
+        report.put("arrivalRate", stats.arrivalRate());
+        report.put("completionRate", stats.completionRate());
+        report.put("meanResidenceMs", stats.meanResidenceMs());
+        report.put("arrivalRateTimesResidence", stats.predictedInFlight());
+        report.put("littlesLawRatio", stats.littlesLawRatio());
+        return report;
+    }
+
+    private FlowTracker register(String endpoint) {
+        var flow = new FlowTracker(intervals);
+        registerGauges("littles.law", flow, Tags.of("endpoint", endpoint));
+        return flow;
+    }
+
+    private void registerGauges(String prefix, FlowTracker flow, Tags tags) {
+        gauge(prefix + ".in.flight", flow, tags, "In flight right now", null, s -> s.inFlight());
+        gauge(prefix + ".concurrency", flow, tags, "L, time-averaged number in flight over the window", null, FlowTracker.Stats::meanInFlight);
+        gauge(prefix + ".arrival.rate", flow, tags, "λ, arrivals per second over the window", null, FlowTracker.Stats::arrivalRate);
+        gauge(prefix + ".residence.time", flow, tags, "W, mean residence time over the window", "milliseconds", FlowTracker.Stats::meanResidenceMs);
+        gauge(prefix + ".predicted.concurrency", flow, tags, "λW, the L that Little's Law predicts", null, FlowTracker.Stats::predictedInFlight);
+    }
+
+    private void gauge(String name, FlowTracker flow, Tags tags, String description, String baseUnit, ToDoubleFunction<FlowTracker.Stats> value) {
+        Gauge.builder(name, flow, f -> value.applyAsDouble(f.stats()))
+                .description(description)
+                .baseUnit(baseUnit)
+                .tags(tags)
+                .register(registry);
+    }
+
+}
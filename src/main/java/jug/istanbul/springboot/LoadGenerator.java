@@ -0,0 +1,253 @@
+package jug.istanbul.springboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Open-loop load generator for this application, the in-build counterpart of
+ * wrk2. Requests are issued at a constant rate on a fixed schedule whether or
+ * not earlier ones have completed, and each latency is measured from the
+ * request's intended start time, so a stalled server shows up in the
+ * percentiles instead of silently lowering the offered load (coordinated
+ * omission). Only loopback targets are accepted.
+ *
+ * <pre>
+ * java -cp target/four-steps-1.0-SNAPSHOT.jar -Dloader.main=jug.istanbul.springboot.LoadGenerator \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --url=http://localhost:8080 --rate=500 --duration=60s --warmup=10s --targets=json,primeFactor
+ * </pre>
+ *
+ * Writes one .hgrm file per target (milliseconds, for the HdrHistogram
+ * plotter) and summary.txt to --output, default target/loadgen.
+ */
+public final class LoadGenerator {
+
+    // Named targets, anything starting with / is used as a path as is
+    private static final Map<String, String> TARGETS = new LinkedHashMap<>();
+    static {
+        TARGETS.put("primeFactor", "/primeFactor?number=927398173993974");
+        TARGETS.put("wait", "/wait?duration=50");
+        TARGETS.put("cpuStress", "/cpuStress?threads=1&durationSeconds=1");
+        TARGETS.put("json", "/json");
+        TARGETS.put("gcStress", "/gcStress?iterations=1000");
+    }
+
+    private static final double MICROS_PER_MS = 1000.0;
+
+    private static final class Target {
+        private final String name;
+        private final HttpRequest request;
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram histogram = new Histogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder non2xx = new LongAdder();
+        private Histogram interval;
+
+        private Target(String name, HttpRequest request) {
+            this.name = name;
+            this.request = request;
+        }
+
+        // Moves the latencies recorded since the last call into the run histogram
+        private synchronized Histogram collect() {
+            interval = recorder.getIntervalHistogram(interval);
+            histogram.add(interval);
+            return interval;
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Target> targets = new ArrayList<>();
+    private final double rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Path output;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean aborted;
+
+    private LoadGenerator(Map<String, String> options) {
+        var url = URI.create(options.getOrDefault("url", "http://localhost:8080"));
+        requireLoopback(url);
+        rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+        warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "5s"));
+        // Unbounded unless set, a run that hits the cap is aborted rather than dropping its slowest requests
+        maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "0"));
+        output = Path.of(options.getOrDefault("output", "target/loadgen"));
+        timeout = DurationStyle.detectAndParse(options.getOrDefault("timeout", "30s"));
+        if (rate <= 0 || duration.isNegative() || duration.isZero() || warmup.isNegative() || maxInFlight < 0) {
+            throw new IllegalArgumentException("Expected --rate > 0, --duration > 0, --warmup >= 0 and --max-in-flight >= 0");
+        }
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(timeout).build();
+        for (var name : options.getOrDefault("targets", "json").split(",")) {
+            var path = name.startsWith("/") ? name : TARGETS.get(name);
+            if (path == null) {
+                throw new IllegalArgumentException("Unknown target '" + name + "', expected a path or one of " + TARGETS.keySet());
+            }
+            var request = HttpRequest.newBuilder(url.resolve(path)).timeout(timeout).GET().build();
+            targets.add(new Target(name, request));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var options = new LinkedHashMap<String, String>();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        var intervalNanos = 1e9 / rate;
+        var start = System.nanoTime();
+        var measureFrom = start + warmup.toNanos();
+        var end = measureFrom + duration.toNanos();
+
+        var reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "load-generator-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> report(start, measureFrom), 1, 1, TimeUnit.SECONDS);
+        System.out.printf(Locale.ROOT, "Offering %.1f requests/s for %s after %s of warmup, round robin over %s%n", rate, duration, warmup,
+                targets.stream().map(t -> t.request.uri().toString()).toList());
+
+        for (long i = 0;; i++) {
+            var intended = start + (long) (i * intervalNanos);
+            if (intended - end >= 0) {
+                break;
+            }
+            // parkNanos may return early, the schedule must not drift
+            for (var now = System.nanoTime(); intended - now > 0; now = System.nanoTime()) {
+                LockSupport.parkNanos(intended - now);
+            }
+            var target = targets.get((int) (i % targets.size()));
+            var measured = intended - measureFrom >= 0;
+            if (maxInFlight > 0 && inFlight.get() >= maxInFlight) {
+                System.out.println("Aborting: " + maxInFlight + " requests in flight, the server cannot keep up with the offered rate");
+                aborted = true;
+                break;
+            }
+            inFlight.incrementAndGet();
+            client.sendAsync(target.request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                var latencyMicros = (System.nanoTime() - intended) / 1_000;
+                inFlight.decrementAndGet();
+                if (!measured) {
+                    return;
+                }
+                // Failures and timeouts are recorded too, leaving them out would hide the slowest outcomes
+                if (error != null) {
+                    target.errors.increment();
+                } else if (response.statusCode() / 100 != 2) {
+                    target.non2xx.increment();
+                }
+                target.recorder.recordValue(latencyMicros);
+            });
+        }
+
+        // Let outstanding requests finish, they still count against their intended start
+        var drainDeadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() - drainDeadline < 0) {
+            Thread.sleep(10);
+        }
+        reporter.shutdownNow();
+        reporter.awaitTermination(1, TimeUnit.SECONDS);
+        writeResults();
+        if (aborted) {
+            throw new IllegalStateException("Run aborted at --max-in-flight=" + maxInFlight + ", its percentiles understate the latency");
+        }
+    }
+
+    private void report(long start, long measureFrom) {
+        long count = 0;
+        long p99 = 0;
+        long max = 0;
+        for (var target : targets) {
+            var interval = target.collect();
+            count += interval.getTotalCount();
+            p99 = Math.max(p99, interval.getValueAtPercentile(99));
+            max = Math.max(max, interval.getMaxValue());
+        }
+        var phase = System.nanoTime() - measureFrom < 0 ? "warmup" : "measure";
+        System.out.printf(Locale.ROOT, "%5ds %-7s completed=%d/s p99=%.3fms max=%.3fms inFlight=%d%n", (System.nanoTime() - start) / 1_000_000_000,
+                phase, count, p99 / MICROS_PER_MS, max / MICROS_PER_MS, inFlight.get());
+    }
+
+    private void writeResults() throws IOException {
+        Files.createDirectories(output);
+        var summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "Offered rate %.1f requests/s over %s, latencies from intended start times, errors included%n", rate,
+                duration));
+        if (aborted) {
+            summary.append(String.format(Locale.ROOT, "ABORTED at %d requests in flight, not a valid result%n", maxInFlight));
+        }
+        summary.append(String.format(Locale.ROOT, "%-40s %10s %10s %8s %8s %10s %10s %10s %10s %10s%n", "target", "requests", "achieved/s", "errors",
+                "non2xx", "p50ms", "p90ms", "p99ms", "p99.9ms", "maxms"));
+        var seconds = duration.toNanos() / 1e9;
+        for (var target : targets) {
+            target.collect();
+            var histogram = target.histogram;
+            summary.append(String.format(Locale.ROOT, "%-40s %10d %10.1f %8d %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n", target.name,
+                    histogram.getTotalCount(), histogram.getTotalCount() / seconds, target.errors.sum(), target.non2xx.sum(),
+                    histogram.getValueAtPercentile(50) / MICROS_PER_MS, histogram.getValueAtPercentile(90) / MICROS_PER_MS,
+                    histogram.getValueAtPercentile(99) / MICROS_PER_MS, histogram.getValueAtPercentile(99.9) / MICROS_PER_MS,
+                    histogram.getMaxValue() / MICROS_PER_MS));
+
+            var hgrm = new ByteArrayOutputStream();
+            try (var printStream = new PrintStream(hgrm, false, StandardCharsets.UTF_8)) {
+                histogram.outputPercentileDistribution(printStream, 5, MICROS_PER_MS);
+            }
+            Files.write(output.resolve(fileName(target.name) + ".hgrm"), hgrm.toByteArray());
+        }
+        Files.writeString(output.resolve("summary.txt"), summary);
+        System.out.print(summary);
+        System.out.println("Wrote " + targets.size() + " .hgrm files and summary.txt to " + output.toAbsolutePath());
+    }
+
+    private static String fileName(String target) {
+        var name = target.replaceAll("[^A-Za-z0-9]+", "-").replaceAll("^-|-$", "");
+        return name.isEmpty() ? "root" : name;
+    }
+
+    private static void requireLoopback(URI url) {
+        try {
+            if (url.getHost() == null || !InetAddress.getByName(url.getHost()).isLoopbackAddress()) {
+                throw new IllegalArgumentException("Only loopback targets are allowed, got " + url);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot resolve " + url.getHost(), e);
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package jug.istanbul.springboot;
+
+/**
+ * Allocation-free factorization for inputs that fit in a signed 64-bit long.
+ * Pollard-Brent runs on {@link Montgomery} residues and cofactors are checked
+ * with {@link Primality#isPrime(long)}.
+ *
+ * Instances keep their result and work buffers between calls, so use one per
+ * thread, e.g. through {@link #forCurrentThread()}.
+ */
+public final class LongFactorization {
+
+    // 2^63 has 63 prime factors, so 64 slots are always enough
+    public static final int MAX_FACTORS = 64;
+
+    private static final ThreadLocal<LongFactorization> PER_THREAD = ThreadLocal.withInitial(LongFactorization::new);
+
+    private static final int[] SMALL_PRIMES = { 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97 };
+    private static final long SMALL_PRIME_BOUND = 101L * 101L;
+
+    private static final int BATCH_SIZE = 128;
+    private static final long MAX_LONG_SQRT = 3037000499L;
+
+    private final long[] factors = new long[MAX_FACTORS];
+    private final long[] pending = new long[MAX_FACTORS];
+    private int count;
+    private long cofactor;
+
+    public static LongFactorization forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Factors n into the internal buffer in ascending order and returns the
+     * number of prime factors. Values below 2 have no factors.
+     */
+    public int factor(long n) {
+        return factor(n, Deadline.none());
+    }
+
+    /**
+     * Like {@link #factor(long)}, but stops splitting composites once the
+     * deadline passes. Whatever is left unsplit is available from
+     * {@link #cofactor()}.
+     */
+    public int factor(long n, Deadline deadline) {
+        count = 0;
+        cofactor = 1;
+        if (n < 2) {
+            return 0;
+        }
+
+        var twos = Long.numberOfTrailingZeros(n);
+        for (var i = 0; i < twos; i++) {
+            factors[count++] = 2;
+        }
+        n >>= twos;
+
+        for (var prime : SMALL_PRIMES) {
+            if ((long) prime * prime > n) {
+                break;
+            }
+            while (n % prime == 0) {
+                factors[count++] = prime;
+                n /= prime;
+            }
+        }
+
+        var top = 0;
+        if (n > 1) {
+            pending[top++] = n;
+        }
+        while (top > 0) {
+            var m = pending[--top];
+            if (m < SMALL_PRIME_BOUND || Primality.isPrime(m)) {
+                factors[count++] = m;
+                continue;
+            }
+            var divisor = brent(m, deadline);
+            if (divisor == 0) {
+                cofactor *= m;
+                continue;
+            }
+            pending[top++] = divisor;
+            pending[top++] = m / divisor;
+        }
+
+        sort(factors, count);
+        return count;
+    }
+
+    public long[] factors() {
+        return factors;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long cofactor() {
+        return cofactor;
+    }
+
+    public String joined(String delimiter) {
+        var sb = new StringBuilder(count * 8);
+        for (var i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            sb.append(factors[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a non-trivial divisor of the odd composite n, or 0 when the
+     * deadline passes first.
+     */
+    private static long brent(long n, Deadline deadline) {
+        var root = (long) Math.sqrt((double) n);
+        while (root * root > n) {
+            root--;
+        }
+        while (root < MAX_LONG_SQRT && (root + 1) * (root + 1) <= n) {
+            root++;
+        }
+        if (root * root == n) {
+            return root;
+        }
+
+        var nInv = Montgomery.inverse(n);
+        var one = Montgomery.one(n);
+
+        for (long c = 1; ; c++) {
+            var y = one - (n - one);
+            if (y < 0) {
+                y += n;
+            }
+            var x = y;
+            var ys = y;
+            var q = one;
+            var g = 1L;
+
+            for (long r = 1; g == 1; r <<= 1) {
+                x = y;
+                for (long i = 0; i < r; i++) {
+                    y = next(y, c, n, nInv);
+                    if ((i & (BATCH_SIZE - 1)) == BATCH_SIZE - 1 && deadline.expired()) {
+                        return 0;
+                    }
+                }
+                for (long k = 0; k < r && g == 1; k += BATCH_SIZE) {
+                    ys = y;
+                    var steps = Math.min(BATCH_SIZE, r - k);
+                    for (long i = 0; i < steps; i++) {
+                        y = next(y, c, n, nInv);
+                        q = Montgomery.multiply(q, Math.abs(x - y), n, nInv);
+                    }
+                    g = gcd(q, n);
+                    if (g == 1 && deadline.expired()) {
+                        return 0;
+                    }
+                }
+            }
+
+            if (g == n) {
+                // The batch overshot, replay it one step at a time
+                do {
+                    ys = next(ys, c, n, nInv);
+                    g = gcd(Math.abs(x - ys), n);
+                } while (g == 1);
+            }
+            if (g != n) {
+                return g;
+            }
+        }
+    }
+
+    private static long next(long y, long c, long n, long nInv) {
+        var sum = Montgomery.multiply(y, y, n, nInv) - (n - c);
+        return sum < 0 ? sum + n : sum;
+    }
+
+    private static long gcd(long a, long b) {
+        if (a == 0) {
+            return b;
+        }
+        if (b == 0) {
+            return a;
+        }
+        var shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                var t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    private static void sort(long[] values, int length) {
+        for (var i = 1; i < length; i++) {
+            var value = values[i];
+            var j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+}
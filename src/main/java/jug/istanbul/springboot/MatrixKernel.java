@@ -0,0 +1,129 @@
+package jug.istanbul.springboot;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Dense n x n double matrix multiply on flat row-major arrays. The loops are
+ * blocked so that a BLOCK x BLOCK tile of each operand stays in L1/L2 while
+ * it is reused, and ordered i-k-j so the innermost loop streams contiguous
+ * rows of b and c, a shape C2 turns into SIMD code on its own. Operand
+ * buffers are kept per thread and reused across calls of the same size, up
+ * to CACHED_MAX_SIZE; larger ones are dropped after each run.
+ */
+final class MatrixKernel {
+
+    static final int MAX_SIZE = 2048;
+    // 3 x 256 x 256 doubles are 1.5 MB per thread, at MAX_SIZE it would be 96 MB on every pool thread
+    static final int CACHED_MAX_SIZE = 256;
+
+    // 3 tiles of 64 x 64 doubles are 96 KB, within L2 on current server cores
+    private static final int BLOCK = 64;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    static final class Buffers {
+        double[] a;
+        double[] b;
+        double[] c;
+        int size;
+
+        private Buffers resize(int n) {
+            if (size != n) {
+                // Drop the old buffers first so both sizes are never live at once
+                a = b = c = null;
+                a = new double[n * n];
+                b = new double[n * n];
+                c = new double[n * n];
+                size = n;
+            }
+            return this;
+        }
+    }
+
+    private MatrixKernel() {
+    }
+
+    /**
+     * The calling thread's buffers for n x n operands, filled with random
+     * values whenever they have to be reallocated.
+     */
+    static Buffers buffers(int n) {
+        var buffers = BUFFERS.get();
+        if (buffers.size != n) {
+            buffers.resize(n);
+            var random = ThreadLocalRandom.current();
+            for (var i = 0; i < n * n; i++) {
+                buffers.a[i] = random.nextDouble();
+                buffers.b[i] = random.nextDouble();
+            }
+        }
+        return buffers;
+    }
+
+    static double flops(int n) {
+        return 2.0 * n * n * n;
+    }
+
+    /**
+     * c = a * b for n x n row-major matrices.
+     */
+    static void multiply(double[] a, double[] b, double[] c, int n) {
+        Arrays.fill(c, 0, n * n, 0.0);
+        for (var ii = 0; ii < n; ii += BLOCK) {
+            var iMax = Math.min(ii + BLOCK, n);
+            for (var kk = 0; kk < n; kk += BLOCK) {
+                var kMax = Math.min(kk + BLOCK, n);
+                for (var jj = 0; jj < n; jj += BLOCK) {
+                    var jMax = Math.min(jj + BLOCK, n);
+                    for (var i = ii; i < iMax; i++) {
+                        var rowA = i * n;
+                        var rowC = i * n;
+                        for (var k = kk; k < kMax; k++) {
+                            var aik = a[rowA + k];
+                            var rowB = k * n;
+                            for (var j = jj; j < jMax; j++) {
+                                c[rowC + j] += aik * b[rowB + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies n x n matrices on the calling thread until duration has
+     * elapsed, always at least once, and reports the achieved GFLOPS.
+     */
+    static TreeMap<String, Object> run(int n, Duration duration) {
+        var buffers = buffers(n);
+        var deadline = Deadline.after(duration);
+        long multiplications = 0;
+        var start = System.nanoTime();
+        long now;
+        try {
+            do {
+                multiply(buffers.a, buffers.b, buffers.c, n);
+                multiplications++;
+                now = System.nanoTime();
+            } while (!deadline.expired(now));
+        } finally {
+            if (n > CACHED_MAX_SIZE) {
+                BUFFERS.remove();
+            }
+        }
+
+        var elapsedNanos = now - start;
+        var result = new TreeMap<String, Object>();
+        result.put("multiplications", multiplications);
+        result.put("durationMs", elapsedNanos / 1_000_000);
+        result.put("gflops", multiplications * flops(n) / elapsedNanos);
+        // Keeps the product observable so the JIT cannot drop the multiplications
+        result.put("checksum", buffers.c[n * n - 1] + buffers.c[0]);
+        return result;
+    }
+
+}
@@ -0,0 +1,118 @@
+package jug.istanbul.springboot;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where the process's memory goes, as the kernel and the JVM each see it:
+ * resident set from /proc/self/status, committed heap and non-heap pools,
+ * and the direct and mapped NIO buffer pools. Whatever RSS the JVM does not
+ * account for (thread stacks, GC and JIT data structures, malloc arenas, JNI)
+ * is reported as otherNativeMB. Committed memory is not necessarily
+ * resident, so that estimate can be off in either direction, but it is the
+ * number that has to fit between -XX:MaxRAMPercentage and the cgroup limit.
+ */
+final class MemoryFootprint {
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+    private static final double MB = 1024.0 * 1024.0;
+
+    private MemoryFootprint() {
+    }
+
+    /**
+     * Resident set size from /proc/self/status in bytes, -1 when unavailable.
+     */
+    static long rssBytes() {
+        return procStatus().getOrDefault("VmRSS", -1L);
+    }
+
+    static long bufferPoolUsed(String name) {
+        for (var pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals(name)) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    static Map<String, Object> snapshot() {
+        var footprint = new LinkedHashMap<String, Object>();
+        var status = procStatus();
+        var rss = status.getOrDefault("VmRSS", -1L);
+        footprint.put("rssMB", rss / MB);
+        footprint.put("rssPeakMB", status.getOrDefault("VmHWM", -1L) / MB);
+        footprint.put("rssAnonMB", status.getOrDefault("RssAnon", -1L) / MB);
+        footprint.put("rssFileMB", status.getOrDefault("RssFile", -1L) / MB);
+        footprint.put("rssShmemMB", status.getOrDefault("RssShmem", -1L) / MB);
+
+        var memoryBean = ManagementFactory.getMemoryMXBean();
+        var heap = memoryBean.getHeapMemoryUsage();
+        var nonHeap = memoryBean.getNonHeapMemoryUsage();
+        footprint.put("heapUsedMB", heap.getUsed() / MB);
+        footprint.put("heapCommittedMB", heap.getCommitted() / MB);
+        footprint.put("heapMaxMB", heap.getMax() / MB);
+        footprint.put("nonHeapCommittedMB", nonHeap.getCommitted() / MB);
+        var nonHeapPools = new LinkedHashMap<String, Double>();
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.NON_HEAP) {
+                nonHeapPools.put(pool.getName(), pool.getUsage().getCommitted() / MB);
+            }
+        }
+        footprint.put("nonHeapPoolsCommittedMB", nonHeapPools);
+
+        long buffers = 0;
+        var bufferPools = new LinkedHashMap<String, Object>();
+        for (var pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            var stats = new LinkedHashMap<String, Object>();
+            stats.put("count", pool.getCount());
+            stats.put("usedMB", pool.getMemoryUsed() / MB);
+            stats.put("capacityMB", pool.getTotalCapacity() / MB);
+            bufferPools.put(pool.getName(), stats);
+            buffers += Math.max(0, pool.getMemoryUsed());
+        }
+        footprint.put("bufferPools", bufferPools);
+        if (rss >= 0) {
+            footprint.put("otherNativeMB", (rss - heap.getCommitted() - nonHeap.getCommitted() - buffers) / MB);
+        }
+
+        try {
+            var limit = RuntimeInspector.containerMemoryLimit();
+            if (limit > 0) {
+                footprint.put("containerLimitMB", limit / MB);
+                footprint.put("heapMaxOfLimitPercent", heap.getMax() * 100.0 / limit);
+                if (rss >= 0) {
+                    footprint.put("rssOfLimitPercent", rss * 100.0 / limit);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            footprint.put("containerLimitMB", "Not available: " + e.getMessage());
+        }
+        return footprint;
+    }
+
+    // Values of the "Name:   123 kB" lines, in bytes
+    private static Map<String, Long> procStatus() {
+        var values = new LinkedHashMap<String, Long>();
+        try {
+            for (var line : Files.readAllLines(PROC_STATUS)) {
+                var separator = line.indexOf(':');
+                if (separator < 0 || !line.endsWith(" kB")) {
+                    continue;
+                }
+                var number = line.substring(separator + 1, line.length() - 3).trim();
+                values.put(line.substring(0, separator), Long.parseLong(number) * 1024);
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux, every RSS value reads as unavailable
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,67 @@
+package jug.istanbul.springboot;
+
+/**
+ * Montgomery arithmetic modulo an odd n below 2^63 with R = 2^64. The 128-bit
+ * intermediate products come from {@link Math#multiplyHigh(long, long)}, so
+ * nothing here allocates.
+ */
+final class Montgomery {
+
+    private Montgomery() {
+    }
+
+    /**
+     * Montgomery product a * b * 2^-64 mod n for residues a, b in [0, n).
+     */
+    static long multiply(long a, long b, long n, long nInv) {
+        var hi = Math.multiplyHigh(a, b);
+        var lo = a * b;
+        var m = lo * nInv;
+        var t = hi - unsignedMultiplyHigh(m, n);
+        return t < 0 ? t + n : t;
+    }
+
+    static long pow(long base, long exponent, long one, long n, long nInv) {
+        var result = one;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result = multiply(result, base, n, nInv);
+            }
+            base = multiply(base, base, n, nInv);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    // n^-1 mod 2^64 by Newton iteration, each step doubles the correct bits
+    static long inverse(long n) {
+        var inv = n;
+        for (var i = 0; i < 5; i++) {
+            inv *= 2 - n * inv;
+        }
+        return inv;
+    }
+
+    // 2^64 mod n, the Montgomery form of 1
+    static long one(long n) {
+        var r = Long.remainderUnsigned(-1L, n) + 1;
+        return r == n ? 0 : r;
+    }
+
+    // 2^128 mod n, obtained by doubling 2^64 mod n another 64 times
+    static long r2(long n, long one) {
+        var r = one;
+        for (var i = 0; i < 64; i++) {
+            r <<= 1;
+            if (Long.compareUnsigned(r, n) >= 0) {
+                r -= n;
+            }
+        }
+        return r;
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+}
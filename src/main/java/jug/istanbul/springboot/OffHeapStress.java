@@ -0,0 +1,215 @@
+package jug.istanbul.springboot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Allocates memory outside the Java heap at a steady rate and keeps each
+ * buffer for a retention period, the allocations behind most container
+ * OOM kills that heap-only stress never shows. Direct buffers come from
+ * ByteBuffer.allocateDirect and count against -XX:MaxDirectMemorySize;
+ * mapped buffers map a fresh temp file READ_WRITE and dirty every page, so
+ * they show up as file-backed RSS, or as shmem when the directory is tmpfs.
+ * The native memory only returns once the GC has collected the buffer
+ * objects and their cleaners have run; with gcAfter set the run collects
+ * and waits for that before its after snapshot.
+ */
+@Component
+public class OffHeapStress {
+
+    private static final long PAGE_SIZE = 4096;
+    private static final long TICK_MILLIS = 10;
+    // How long gcAfter waits for the Cleaner thread to free the released buffers
+    private static final Duration RELEASE_TIMEOUT = Duration.ofSeconds(5);
+
+    public enum Mode {
+        DIRECT, MAPPED;
+
+        public static Mode parse(String mode) {
+            try {
+                return valueOf(mode.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown mode '" + mode + "', expected direct or mapped");
+            }
+        }
+    }
+
+    private record Held(ByteBuffer buffer, long releaseAt) {
+    }
+
+    private final long maxRetainedBytes;
+    private final Path mappedDirectory;
+
+    // Sink for a byte of every buffer
+    private volatile byte sink;
+
+    public OffHeapStress(@Value("${off-heap.max-retained:1GB}") DataSize maxRetained, @Value("${off-heap.mapped-dir:}") String mappedDirectory) {
+        this.maxRetainedBytes = maxRetained.toBytes();
+        this.mappedDirectory = Path.of(mappedDirectory.isBlank() ? System.getProperty("java.io.tmpdir") : mappedDirectory);
+    }
+
+    public long maxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Allocates bufferBytes-sized buffers at rateMbPerSecond for duration on
+     * the calling thread and samples the process footprint once a second.
+     * The buffers still inside their retention period never add up to more
+     * than off-heap.max-retained. Released buffers keep their native memory
+     * until their cleaners run, so the pool can hold more than that.
+     */
+    public Map<String, Object> run(Mode mode, double rateMbPerSecond, int bufferBytes, Duration retention, Duration duration, boolean gcAfter) {
+        var results = new TreeMap<String, Object>();
+        results.put("mode", mode.name().toLowerCase(Locale.ROOT));
+        results.put("rateMbPerSecond", rateMbPerSecond);
+        results.put("bufferBytes", bufferBytes);
+        results.put("retentionMs", retention.toMillis());
+        results.put("maxRetainedMB", maxRetainedBytes / 1024 / 1024);
+        if (mode == Mode.MAPPED) {
+            results.put("mappedDirectory", mappedDirectory.toString());
+        }
+        results.put("before", MemoryFootprint.snapshot());
+        var pool = mode == Mode.DIRECT ? "direct" : "mapped";
+        var poolUsedBefore = MemoryFootprint.bufferPoolUsed(pool);
+
+        var held = new ArrayDeque<Held>();
+        var timeline = new ArrayList<Map<String, Object>>();
+        var bytesPerNano = rateMbPerSecond * 1024 * 1024 / 1e9;
+        long heldBytes = 0;
+        long peakHeldBytes = 0;
+        long allocatedBytes = 0;
+        long allocations = 0;
+        long skippedAtCap = 0;
+        double owedBytes = 0;
+
+        var start = System.nanoTime();
+        var deadline = Deadline.after(duration);
+        var lastTick = start;
+        var nextSample = start;
+        try {
+            for (var now = start; !deadline.expired(now); now = System.nanoTime()) {
+                while (!held.isEmpty() && held.peekFirst().releaseAt() - now <= 0) {
+                    heldBytes -= held.removeFirst().buffer().capacity();
+                }
+                owedBytes += bytesPerNano * (now - lastTick);
+                lastTick = now;
+                var releaseAt = now + retention.toNanos();
+                while (owedBytes >= bufferBytes) {
+                    owedBytes -= bufferBytes;
+                    if (heldBytes + bufferBytes > maxRetainedBytes) {
+                        skippedAtCap++;
+                        continue;
+                    }
+                    var buffer = mode == Mode.DIRECT ? ByteBuffer.allocateDirect(bufferBytes) : map(bufferBytes);
+                    // allocateDirect zeroes its memory, a mapping has to be dirtied page by page
+                    for (long offset = 0; offset < bufferBytes; offset += PAGE_SIZE) {
+                        buffer.put((int) offset, (byte) 1);
+                    }
+                    sink = buffer.get(bufferBytes - 1);
+                    held.addLast(new Held(buffer, releaseAt));
+                    heldBytes += bufferBytes;
+                    peakHeldBytes = Math.max(peakHeldBytes, heldBytes);
+                    allocatedBytes += bufferBytes;
+                    allocations++;
+                }
+                if (now - nextSample >= 0) {
+                    timeline.add(sample(now - start, heldBytes));
+                    nextSample += TimeUnit.SECONDS.toNanos(1);
+                }
+                TimeUnit.MILLISECONDS.sleep(TICK_MILLIS);
+            }
+        } catch (OutOfMemoryError e) {
+            // Thrown by Bits.reserveMemory once -XX:MaxDirectMemorySize is used up, the heap is unaffected
+            results.put("error", "OutOfMemoryError: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.put("error", "Interrupted");
+        }
+        var elapsedNanos = System.nanoTime() - start;
+        results.put("beforeRelease", MemoryFootprint.snapshot());
+
+        results.put("allocations", allocations);
+        results.put("allocatedMB", allocatedBytes / 1024.0 / 1024);
+        results.put("achievedMbPerSecond", allocatedBytes / 1024.0 / 1024 / (elapsedNanos / 1e9));
+        results.put("peakHeldMB", peakHeldBytes / 1024.0 / 1024);
+        results.put("skippedAtCap", skippedAtCap);
+        results.put("timeline", timeline);
+        results.put("actualDurationMs", elapsedNanos / 1_000_000);
+
+        held.clear();
+        if (gcAfter) {
+            // Buffer memory is freed by the cleaners of collected buffers, nothing else releases it
+            System.gc();
+            awaitRelease(pool, poolUsedBefore + bufferBytes, results);
+        }
+        results.put("after", MemoryFootprint.snapshot());
+        return results;
+    }
+
+    /**
+     * Waits until less than one of the run's buffers is left in the pool on
+     * top of what it held before, others use small direct buffers too. The
+     * Cleaner thread frees buffers some time after the GC found them
+     * unreachable.
+     */
+    private static void awaitRelease(String pool, long releasedBelow, Map<String, Object> results) {
+        var start = System.nanoTime();
+        var deadline = Deadline.after(RELEASE_TIMEOUT);
+        var released = MemoryFootprint.bufferPoolUsed(pool) < releasedBelow;
+        try {
+            while (!released && !deadline.expired()) {
+                TimeUnit.MILLISECONDS.sleep(TICK_MILLIS);
+                released = MemoryFootprint.bufferPoolUsed(pool) < releasedBelow;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        results.put("releaseWaitMs", (System.nanoTime() - start) / 1_000_000);
+        if (!released) {
+            results.put("releaseTimedOut", "The " + pool + " pool still held the run's buffers after " + RELEASE_TIMEOUT.toMillis() + " ms");
+        }
+    }
+
+    private ByteBuffer map(int bytes) {
+        try {
+            var file = Files.createTempFile(mappedDirectory, "off-heap-stress-", ".bin");
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping outlives both the channel and the directory entry
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map a temp file in " + mappedDirectory, e);
+        }
+    }
+
+    private static Map<String, Object> sample(long elapsedNanos, long heldBytes) {
+        var sample = new LinkedHashMap<String, Object>();
+        sample.put("elapsedMs", elapsedNanos / 1_000_000);
+        sample.put("heldMB", heldBytes / 1024.0 / 1024);
+        sample.put("directMB", MemoryFootprint.bufferPoolUsed("direct") / 1024.0 / 1024);
+        sample.put("mappedMB", MemoryFootprint.bufferPoolUsed("mapped") / 1024.0 / 1024);
+        sample.put("rssMB", MemoryFootprint.rssBytes() / 1024.0 / 1024);
+        return sample;
+    }
+
+}
@@ -0,0 +1,389 @@
+package jug.istanbul.springboot;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Allocates from many mutator threads at once, as fast as they can, to show
+ * how TLAB refills, promotion and the collector's own threads hold up when
+ * allocation is spread across cores instead of running on one request
+ * thread. Every thread runs its own object mix and keeps a fraction of its
+ * objects in a ring so some of them live long enough to be copied or
+ * promoted. Allocated bytes come from the JVM's per-thread allocation
+ * counters, not from what the loop thinks it allocated.
+ *
+ * With scaling set the same run is repeated with 1, 2, 4, ... threads up to
+ * N, and each step's aggregate rate is compared with the single-threaded one:
+ * efficiency is speedup divided by threads, efficiencyWithinCpus divides by
+ * the threads the CPUs can actually run in parallel, so a collector that
+ * stops scaling shows up as the latter dropping well below 1.
+ */
+@Component
+public class ParallelAllocationStress {
+
+    private static final int SCRATCH_SLOTS = 64;
+    // Power of two, so the check is a mask; a thousand small allocations take only microseconds
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    // Clock ticks of /proc/<pid>/task/<tid>/stat, USER_HZ is 100 on every mainstream Linux
+    private static final long NANOS_PER_TICK = TimeUnit.SECONDS.toNanos(1) / 100;
+    // Native threads that do collection work, the VM Thread runs Serial and every safepoint operation
+    private static final List<String> GC_THREAD_PREFIXES = List.of("GC Thread", "G1 ", "VM Thread", "ZWorker", "ZDirector", "XWorker", "XDirector",
+            "Shenandoah", "ParGC");
+
+    /**
+     * Kinds of objects a mix draws from, sized to hit the different
+     * allocation paths: TLAB bumps, TLAB refills, outside-TLAB and, with
+     * G1's default region sizes, humongous allocation.
+     */
+    public enum ObjectKind {
+        SMALL(16, 128), MEDIUM(1024, 8192), LARGE(64 * 1024, 256 * 1024), HUGE(2 * 1024 * 1024, 8 * 1024 * 1024), GRAPH(0, 0);
+
+        // Nodes per GRAPH object, each a small object with a reference and a payload
+        private static final int GRAPH_NODES = 16;
+
+        private final int minBytes;
+        private final int maxBytes;
+
+        ObjectKind(int minBytes, int maxBytes) {
+            this.minBytes = minBytes;
+            this.maxBytes = maxBytes;
+        }
+
+        private Object allocate(ThreadLocalRandom random) {
+            if (this == GRAPH) {
+                Node head = null;
+                for (var i = 0; i < GRAPH_NODES; i++) {
+                    head = new Node(head, random.nextLong());
+                }
+                return head;
+            }
+            return new byte[random.nextInt(minBytes, maxBytes + 1)];
+        }
+    }
+
+    private record Node(Node next, long payload) {
+    }
+
+    /**
+     * Weighted selection of object kinds, allocated round-robin so each kind
+     * gets weight allocations per cycle, e.g. small:8,graph:2,large:1.
+     */
+    public record ObjectMix(String spec, ObjectKind[] schedule) {
+
+        public static ObjectMix parse(String spec) {
+            var schedule = new ArrayList<ObjectKind>();
+            for (var part : spec.split(",")) {
+                var trimmed = part.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                var separator = trimmed.indexOf(':');
+                var name = separator < 0 ? trimmed : trimmed.substring(0, separator).trim();
+                ObjectKind kind;
+                try {
+                    kind = ObjectKind.valueOf(name.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown object kind '" + name + "', expected one of small, medium, large, huge or graph");
+                }
+                int weight;
+                try {
+                    weight = separator < 0 ? 1 : Integer.parseInt(trimmed.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid weight in '" + trimmed + "'");
+                }
+                if (weight < 0 || weight > WorkloadMix.MAX_WEIGHT) {
+                    throw new IllegalArgumentException("Weight of " + name + " must be within [0, " + WorkloadMix.MAX_WEIGHT + "]");
+                }
+                for (var w = 0; w < weight; w++) {
+                    schedule.add(kind);
+                }
+            }
+            if (schedule.isEmpty()) {
+                throw new IllegalArgumentException("Mix '" + spec + "' selects no object kind");
+            }
+            return new ObjectMix(spec.trim(), schedule.toArray(ObjectKind[]::new));
+        }
+
+        /**
+         * One mix per thread, separated by ';' and assigned to the threads
+         * round-robin, e.g. small:1;large:1 gives every other thread large
+         * objects only.
+         */
+        public static List<ObjectMix> parseAll(String specs) {
+            var mixes = Stream.of(specs.split(";")).filter(s -> !s.isBlank()).map(ObjectMix::parse).toList();
+            if (mixes.isEmpty()) {
+                throw new IllegalArgumentException("Expected at least one object mix");
+            }
+            return mixes;
+        }
+    }
+
+    private record ThreadResult(String threadName, String mix, long allocatedBytes, long objects, long cpuNanos, long elapsedNanos, String error,
+            boolean outOfMemory) {
+    }
+
+    private final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final GcPauseRecorder gcPauseRecorder;
+    private final int maxThreads;
+    // One run at a time, concurrent runs would measure each other
+    private final ReentrantLock running = new ReentrantLock();
+
+    public ParallelAllocationStress(GcPauseRecorder gcPauseRecorder, @Value("${allocation-stress.max-threads:64}") int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("allocation-stress.max-threads must be positive");
+        }
+        this.gcPauseRecorder = gcPauseRecorder;
+        this.maxThreads = maxThreads;
+    }
+
+    public int maxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * The thread counts a run goes through: powers of two below threads and
+     * threads itself when scaling, otherwise threads alone.
+     */
+    public static List<Integer> threadCounts(int threads, boolean scaling) {
+        if (!scaling) {
+            return List.of(threads);
+        }
+        var counts = new ArrayList<Integer>();
+        for (var count = 1; count < threads; count *= 2) {
+            counts.add(count);
+        }
+        counts.add(threads);
+        return counts;
+    }
+
+    /**
+     * Runs every step of threadCounts(threads, scaling) for stepDuration.
+     * Each thread retains an allocated object with probability survivalRatio
+     * in a ring of retainedObjects slots, replacing the oldest.
+     *
+     * @throws IllegalStateException when another run is in progress
+     */
+    public Map<String, Object> run(int threads, boolean scaling, List<ObjectMix> mixes, double survivalRatio, int retainedObjects, Duration stepDuration) {
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isCurrentThreadCpuTimeSupported()) {
+            throw new IllegalStateException("This JVM does not report per-thread allocated bytes and CPU time");
+        }
+        if (!running.tryLock()) {
+            throw new IllegalStateException("An allocation stress run is already in progress");
+        }
+        try {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+            threadBean.setThreadCpuTimeEnabled(true);
+
+            var results = new TreeMap<String, Object>();
+            results.put("threads", threads);
+            results.put("mixes", mixes.stream().map(ObjectMix::spec).toList());
+            results.put("survivalRatio", survivalRatio);
+            results.put("retainedObjectsPerThread", retainedObjects);
+            results.put("stepDurationMs", stepDuration.toMillis());
+            results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            results.put("collectors", ManagementFactory.getGarbageCollectorMXBeans().stream().map(b -> b.getName()).toList());
+
+            var steps = new ArrayList<Map<String, Object>>();
+            double singleThreadRate = 0;
+            for (var count : threadCounts(threads, scaling)) {
+                var step = runStep(count, mixes, survivalRatio, retainedObjects, stepDuration);
+                var aggregate = (double) step.get("bytesPerSecond");
+                if (count == 1) {
+                    singleThreadRate = aggregate;
+                }
+                if (singleThreadRate > 0) {
+                    var speedup = aggregate / singleThreadRate;
+                    step.put("speedup", speedup);
+                    step.put("efficiency", speedup / count);
+                    step.put("efficiencyWithinCpus", speedup / Math.min(count, Runtime.getRuntime().availableProcessors()));
+                }
+                steps.add(step);
+            }
+            results.put("steps", steps);
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the mutator threads", e);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private Map<String, Object> runStep(int threads, List<ObjectMix> mixes, double survivalRatio, int retainedObjects, Duration duration)
+            throws InterruptedException {
+        var results = new ThreadResult[threads];
+        var workers = new Thread[threads];
+        var ready = new CountDownLatch(threads);
+        var go = new CountDownLatch(1);
+        for (var t = 0; t < threads; t++) {
+            var index = t;
+            var mix = mixes.get(t % mixes.size());
+            workers[t] = new Thread(() -> results[index] = mutate(mix, survivalRatio, retainedObjects, duration, ready, go),
+                    "allocation-stress-" + (t + 1));
+            workers[t].setDaemon(true);
+            workers[t].start();
+        }
+        ready.await();
+
+        var gcWindow = gcPauseRecorder.mark();
+        var gcCpuBefore = gcThreadCpuNanos();
+        var start = System.nanoTime();
+        go.countDown();
+        for (var worker : workers) {
+            worker.join();
+        }
+        var elapsedNanos = System.nanoTime() - start;
+        var gcCpuNanos = gcCpuBefore < 0 ? -1 : gcThreadCpuNanos() - gcCpuBefore;
+        var gcPauses = gcWindow.delta();
+
+        long allocatedBytes = 0;
+        long mutatorCpuNanos = 0;
+        var failedThreads = 0;
+        var perThread = new ArrayList<Map<String, Object>>(threads);
+        for (var t = 0; t < threads; t++) {
+            // No result only when the thread died before or after its allocation loop
+            var result = results[t] != null ? results[t]
+                    : new ThreadResult(workers[t].getName(), mixes.get(t % mixes.size()).spec(), 0, 0, 0, 1, "thread died, see the log", false);
+            allocatedBytes += result.allocatedBytes();
+            mutatorCpuNanos += result.cpuNanos();
+            var report = new LinkedHashMap<String, Object>();
+            report.put("thread", result.threadName());
+            report.put("mix", result.mix());
+            report.put("allocatedMB", result.allocatedBytes() / 1024.0 / 1024);
+            report.put("bytesPerSecond", result.allocatedBytes() / (result.elapsedNanos() / 1e9));
+            report.put("objects", result.objects());
+            report.put("cpuMs", result.cpuNanos() / 1_000_000);
+            if (result.outOfMemory() || result.error() != null) {
+                report.put("error", result.outOfMemory() ? "OutOfMemoryError: " + result.error() : result.error());
+                failedThreads++;
+            }
+            perThread.add(report);
+        }
+
+        var step = new LinkedHashMap<String, Object>();
+        step.put("threads", threads);
+        step.put("elapsedMs", elapsedNanos / 1_000_000);
+        if (failedThreads > 0) {
+            step.put("error", failedThreads + " of " + threads + " threads stopped early, see perThread");
+        }
+        step.put("allocatedMB", allocatedBytes / 1024.0 / 1024);
+        step.put("bytesPerSecond", allocatedBytes / (elapsedNanos / 1e9));
+        step.put("mbPerSecond", allocatedBytes / 1024.0 / 1024 / (elapsedNanos / 1e9));
+        step.put("mutatorCpuMs", mutatorCpuNanos / 1_000_000);
+        // Share of wall time the mutators were stopped, and of all CPU the JVM spent that went to GC threads
+        step.put("gcPauseOverhead", (long) gcPauses.get("pauseTotalMs") * 1e6 / elapsedNanos);
+        if (gcCpuNanos >= 0) {
+            step.put("gcCpuMs", gcCpuNanos / 1_000_000);
+            step.put("gcCpuOverhead", (double) gcCpuNanos / (gcCpuNanos + mutatorCpuNanos));
+        }
+        step.put("gcPauses", gcPauses);
+        step.put("perThread", perThread);
+        return step;
+    }
+
+    private ThreadResult mutate(ObjectMix mix, double survivalRatio, int retainedObjects, Duration duration, CountDownLatch ready, CountDownLatch go) {
+        var random = ThreadLocalRandom.current();
+        var schedule = mix.schedule();
+        // Every object escapes into scratch, only the retained ones outlive the next few allocations
+        var scratch = new Object[SCRATCH_SLOTS];
+        var retained = new Object[Math.max(1, retainedObjects)];
+        var retainedNext = 0;
+        long objects = 0;
+
+        ready.countDown();
+        try {
+            go.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ThreadResult(Thread.currentThread().getName(), mix.spec(), 0, 0, 0, 1, "Interrupted", false);
+        }
+        var allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        var cpuBefore = threadBean.getCurrentThreadCpuTime();
+        var start = System.nanoTime();
+        var deadline = Deadline.after(duration);
+        String error = null;
+        var outOfMemory = false;
+        try {
+            var retains = retainedObjects > 0 && survivalRatio > 0;
+            // Reading the clock costs more than most allocations, so look at it only every DEADLINE_CHECK_INTERVAL objects
+            for (var position = 0; (objects & (DEADLINE_CHECK_INTERVAL - 1)) != 0 || !deadline.expired(); position = (position + 1) % schedule.length) {
+                var object = schedule[position].allocate(random);
+                scratch[(int) (objects++ & (SCRATCH_SLOTS - 1))] = object;
+                if (retains && random.nextDouble() < survivalRatio) {
+                    retained[retainedNext] = object;
+                    retainedNext = (retainedNext + 1) % retained.length;
+                }
+            }
+        } catch (OutOfMemoryError e) {
+            // An expected outcome of the stress, let go of everything this thread holds before reporting it
+            retained = null;
+            scratch = null;
+            // Concatenating here could fail again while other threads still hold their objects
+            error = e.getMessage();
+            outOfMemory = true;
+        }
+        var elapsedNanos = System.nanoTime() - start;
+        return new ThreadResult(Thread.currentThread().getName(), mix.spec(), threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore, objects,
+                threadBean.getCurrentThreadCpuTime() - cpuBefore, elapsedNanos, error, outOfMemory);
+    }
+
+    /**
+     * CPU time of the JVM's collector threads from /proc/self/task, or -1
+     * where that is not available. They are native threads the ThreadMXBean
+     * does not see.
+     */
+    private static long gcThreadCpuNanos() {
+        var tasks = Path.of("/proc/self/task");
+        if (!Files.isDirectory(tasks)) {
+            return -1;
+        }
+        long ticks = 0;
+        try (var threads = Files.list(tasks)) {
+            for (var task : (Iterable<Path>) threads::iterator) {
+                String stat;
+                try {
+                    stat = Files.readString(task.resolve("stat"));
+                } catch (IOException e) {
+                    // The thread exited since the directory was listed
+                    continue;
+                }
+                // pid (comm) state ..., comm may contain spaces so fields are counted after the closing parenthesis
+                var open = stat.indexOf('(');
+                var close = stat.lastIndexOf(')');
+                if (open < 0 || close < open) {
+                    continue;
+                }
+                var name = stat.substring(open + 1, close);
+                if (GC_THREAD_PREFIXES.stream().noneMatch(name::startsWith)) {
+                    continue;
+                }
+                var fields = stat.substring(close + 2).split(" ");
+                // utime and stime are fields 14 and 15 of the whole line
+                ticks += Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+        return ticks * NANOS_PER_TICK;
+    }
+
+}
@@ -0,0 +1,166 @@
+package jug.istanbul.springboot;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Factorization engine that strips small primes by trial division, checks the
+ * remaining cofactors with {@link Primality} and splits composites with
+ * Brent's variant of Pollard's rho.
+ */
+public class PollardBrentFactorization {
+
+    private static final int SMALL_PRIME_LIMIT = 1000;
+    private static final BigInteger[] SMALL_PRIMES = smallPrimes(SMALL_PRIME_LIMIT);
+    private static final BigInteger SMALL_PRIME_LIMIT_SQUARED = BigInteger.valueOf((long) SMALL_PRIME_LIMIT * SMALL_PRIME_LIMIT);
+
+    // Number of rho steps multiplied together before taking a gcd
+    private static final int BATCH_SIZE = 128;
+
+    public List<BigInteger> factors(BigInteger n) {
+        return factors(n, Deadline.none()).factors();
+    }
+
+    /**
+     * Factors n until the deadline passes. Composites that could not be split
+     * in time are multiplied into the returned cofactor.
+     */
+    public FactorizationResult factors(BigInteger n, Deadline deadline) {
+        var results = new ArrayList<BigInteger>();
+        if (n.compareTo(BigInteger.TWO) < 0) {
+            return new FactorizationResult(Collections.unmodifiableList(results), BigInteger.ONE);
+        }
+
+        n = stripSmallPrimes(n, results);
+
+        var cofactor = BigInteger.ONE;
+        var pending = new ArrayDeque<BigInteger>();
+        if (!n.equals(BigInteger.ONE)) {
+            pending.push(n);
+        }
+        while (!pending.isEmpty()) {
+            var composite = pending.pop();
+            if (composite.bitLength() < Long.SIZE) {
+                // Cofactors that fit in a long are finished on the primitive path
+                var longFactorization = LongFactorization.forCurrentThread();
+                var found = longFactorization.factor(composite.longValue(), deadline);
+                for (var i = 0; i < found; i++) {
+                    results.add(BigInteger.valueOf(longFactorization.factors()[i]));
+                }
+                if (longFactorization.cofactor() != 1) {
+                    cofactor = cofactor.multiply(BigInteger.valueOf(longFactorization.cofactor()));
+                }
+                continue;
+            }
+            if (Primality.isPrime(composite)) {
+                results.add(composite);
+                continue;
+            }
+            var divisor = brent(composite, deadline);
+            if (divisor == null) {
+                cofactor = cofactor.multiply(composite);
+                continue;
+            }
+            pending.push(divisor);
+            pending.push(composite.divide(divisor));
+        }
+
+        Collections.sort(results);
+        return new FactorizationResult(Collections.unmodifiableList(results), cofactor);
+    }
+
+    private BigInteger stripSmallPrimes(BigInteger n, List<BigInteger> results) {
+        for (var prime : SMALL_PRIMES) {
+            if (prime.multiply(prime).compareTo(n) > 0) {
+                break;
+            }
+            var divRem = n.divideAndRemainder(prime);
+            while (divRem[1].signum() == 0) {
+                results.add(prime);
+                n = divRem[0];
+                divRem = n.divideAndRemainder(prime);
+            }
+        }
+        // A cofactor below p^2 for the last tested prime p is either 1 or prime
+        if (!n.equals(BigInteger.ONE) && n.compareTo(SMALL_PRIME_LIMIT_SQUARED) < 0) {
+            results.add(n);
+            return BigInteger.ONE;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a non-trivial divisor of the odd composite n, or null when the
+     * deadline passes first.
+     */
+    private BigInteger brent(BigInteger n, Deadline deadline) {
+        var sqrt = n.sqrt();
+        if (sqrt.multiply(sqrt).equals(n)) {
+            return sqrt;
+        }
+
+        for (long c = 1; ; c++) {
+            var increment = BigInteger.valueOf(c);
+            var y = BigInteger.TWO;
+            var x = y;
+            var ys = y;
+            var q = BigInteger.ONE;
+            var g = BigInteger.ONE;
+
+            for (long r = 1; g.equals(BigInteger.ONE); r <<= 1) {
+                x = y;
+                for (long i = 0; i < r; i++) {
+                    y = next(y, increment, n);
+                    if ((i & (BATCH_SIZE - 1)) == BATCH_SIZE - 1 && deadline.expired()) {
+                        return null;
+                    }
+                }
+                for (long k = 0; k < r && g.equals(BigInteger.ONE); k += BATCH_SIZE) {
+                    ys = y;
+                    var steps = Math.min(BATCH_SIZE, r - k);
+                    for (long i = 0; i < steps; i++) {
+                        y = next(y, increment, n);
+                        q = q.multiply(x.subtract(y).abs()).mod(n);
+                    }
+                    g = q.gcd(n);
+                    if (g.equals(BigInteger.ONE) && deadline.expired()) {
+                        return null;
+                    }
+                }
+            }
+
+            if (g.equals(n)) {
+                // The batch overshot, replay it one step at a time
+                do {
+                    ys = next(ys, increment, n);
+                    g = x.subtract(ys).abs().gcd(n);
+                } while (g.equals(BigInteger.ONE));
+            }
+            if (!g.equals(n)) {
+                return g;
+            }
+        }
+    }
+
+    private static BigInteger next(BigInteger y, BigInteger c, BigInteger n) {
+        return y.multiply(y).add(c).mod(n);
+    }
+
+    private static BigInteger[] smallPrimes(int limit) {
+        var composite = new boolean[limit];
+        var primes = new ArrayList<BigInteger>();
+        for (var i = 2; i < limit; i++) {
+            if (!composite[i]) {
+                primes.add(BigInteger.valueOf(i));
+                for (var j = i * i; j < limit; j += i) {
+                    composite[j] = true;
+                }
+            }
+        }
+        return primes.toArray(new BigInteger[0]);
+    }
+
+}
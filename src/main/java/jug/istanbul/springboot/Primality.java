@@ -0,0 +1,121 @@
+package jug.istanbul.springboot;
+
+import java.math.BigInteger;
+
+/**
+ * Shared primality test. Inputs are screened by trial division with the primes
+ * below 100 and then checked with Miller-Rabin, which is deterministic for the
+ * full 64-bit range and for BigIntegers below 3.3 * 10^24.
+ */
+public final class Primality {
+
+    private static final int[] SMALL_PRIMES = { 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97 };
+    private static final long SMALL_PRIME_BOUND = 101L * 101L;
+
+    // Deterministic Miller-Rabin bases for the full 64-bit range (Jim Sinclair)
+    private static final long[] LONG_BASES = { 2, 325, 9375, 28178, 450775, 9780504, 1795265022 };
+
+    // First 13 primes, deterministic for n < 3.3 * 10^24, strong probable prime test above that
+    private static final int[] BIG_BASES = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41 };
+    private static final BigInteger SMALL_PRIME_PRODUCT = smallPrimeProduct();
+
+    private Primality() {
+    }
+
+    public static boolean isPrime(long n) {
+        if (n < 2) {
+            return false;
+        }
+        if ((n & 1) == 0) {
+            return n == 2;
+        }
+        for (var prime : SMALL_PRIMES) {
+            if (n == prime) {
+                return true;
+            }
+            if (n % prime == 0) {
+                return false;
+            }
+        }
+        if (n < SMALL_PRIME_BOUND) {
+            return true;
+        }
+
+        var nInv = Montgomery.inverse(n);
+        var one = Montgomery.one(n);
+        var r2 = Montgomery.r2(n, one);
+        var minusOne = n - one;
+
+        var shift = Long.numberOfTrailingZeros(n - 1);
+        var d = (n - 1) >>> shift;
+
+        for (var base : LONG_BASES) {
+            var a = base % n;
+            if (a == 0) {
+                continue;
+            }
+            var x = Montgomery.pow(Montgomery.multiply(a, r2, n, nInv), d, one, n, nInv);
+            if (x == one || x == minusOne) {
+                continue;
+            }
+            var witness = true;
+            for (var r = 1; r < shift; r++) {
+                x = Montgomery.multiply(x, x, n, nInv);
+                if (x == minusOne) {
+                    witness = false;
+                    break;
+                }
+            }
+            if (witness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isPrime(BigInteger n) {
+        // Large negative values would otherwise reach modPow with a negative modulus
+        if (n.signum() <= 0) {
+            return false;
+        }
+        if (n.bitLength() < Long.SIZE) {
+            return isPrime(n.longValue());
+        }
+        // One gcd against the product of the small primes replaces 25 divisions
+        if (!n.gcd(SMALL_PRIME_PRODUCT).equals(BigInteger.ONE)) {
+            return false;
+        }
+
+        var nMinusOne = n.subtract(BigInteger.ONE);
+        var shift = nMinusOne.getLowestSetBit();
+        var d = nMinusOne.shiftRight(shift);
+
+        for (var base : BIG_BASES) {
+            var x = BigInteger.valueOf(base).modPow(d, n);
+            if (x.equals(BigInteger.ONE) || x.equals(nMinusOne)) {
+                continue;
+            }
+            var witness = true;
+            for (var r = 1; r < shift; r++) {
+                x = x.multiply(x).mod(n);
+                if (x.equals(nMinusOne)) {
+                    witness = false;
+                    break;
+                }
+            }
+            if (witness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static BigInteger smallPrimeProduct() {
+        var product = BigInteger.TWO;
+        for (var prime : SMALL_PRIMES) {
+            product = product.multiply(BigInteger.valueOf(prime));
+        }
+        return product;
+    }
+
+}
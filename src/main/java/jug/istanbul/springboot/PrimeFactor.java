@@ -3,5 +3,5 @@ package jug.istanbul.springboot;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
-public record PrimeFactor(BigInteger number, String factors, BigDecimal timeInSeconds) {
+public record PrimeFactor(BigInteger number, String factors, BigDecimal timeInSeconds, boolean cached, boolean complete, BigInteger cofactor) {
 }
@@ -0,0 +1,177 @@
+package jug.istanbul.springboot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Factors a stream of whitespace or comma separated numbers on the shared
+ * work-stealing pool and writes one JSON line per result as soon as it is
+ * ready, followed by a summary line.
+ */
+@Service
+public class PrimeFactorBatchService {
+
+    public record Item(long index, @JsonUnwrapped PrimeFactor result, double latencyMs) {
+    }
+
+    private record Completion(long index, String input, PrimeFactor result, String error, long latencyNanos) {
+    }
+
+    private final PrimeFactorService primeFactorService;
+    private final ForkJoinPool pool;
+    private final ObjectWriter lineWriter;
+    private final int maxInFlight;
+    private final Duration stallTimeout;
+
+    public PrimeFactorBatchService(PrimeFactorService primeFactorService, ForkJoinPool factorizationPool, ObjectMapper objectMapper,
+            @Value("${primefactor.batch.stall-timeout:5m}") Duration stallTimeout) {
+        this.primeFactorService = primeFactorService;
+        this.stallTimeout = stallTimeout;
+        this.pool = factorizationPool;
+        // NDJSON needs one document per line whatever the global indent setting says,
+        // and the response stream has to stay open between lines
+        this.lineWriter = objectMapper.writer()
+                .without(SerializationFeature.INDENT_OUTPUT)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.maxInFlight = factorizationPool.getParallelism() * 4;
+    }
+
+    /**
+     * Streams the results for every number read from input. A non-null
+     * itemTimeoutMs bounds each factorization separately, starting when the
+     * item is picked up by a pool thread.
+     */
+    public void factor(InputStream input, OutputStream output, FactorizationAlgorithm algorithm, boolean useCache, Long itemTimeoutMs) throws IOException {
+        var completions = new LinkedBlockingQueue<Completion>();
+        var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+        var stats = new BatchStats();
+        var start = System.nanoTime();
+
+        long submitted = 0;
+        String token;
+        while ((token = nextToken(reader)) != null) {
+            // Bound the number of queued numbers so a huge upload cannot pile up on the heap
+            while (submitted - stats.count >= maxInFlight) {
+                write(output, take(completions), stats);
+            }
+            submit(submitted++, token, algorithm, useCache, itemTimeoutMs, completions);
+            for (var ready = completions.poll(); ready != null; ready = completions.poll()) {
+                write(output, ready, stats);
+            }
+        }
+        while (stats.count < submitted) {
+            write(output, take(completions), stats);
+        }
+
+        var elapsedNanos = System.nanoTime() - start;
+        var summary = new LinkedHashMap<String, Object>();
+        summary.put("count", stats.count);
+        summary.put("errors", stats.errors);
+        summary.put("parallelism", pool.getParallelism());
+        summary.put("elapsedMs", elapsedNanos / 1_000_000.0);
+        summary.put("numbersPerSecond", elapsedNanos > 0 ? stats.count * 1_000_000_000.0 / elapsedNanos : 0);
+        summary.put("latencyMeanMs", stats.count > 0 ? stats.latencyNanosTotal / 1_000_000.0 / stats.count : 0);
+        summary.put("latencyMaxMs", stats.latencyNanosMax / 1_000_000.0);
+        lineWriter.writeValue(output, Map.of("summary", summary));
+        output.write('\n');
+        output.flush();
+    }
+
+    private void submit(long index, String token, FactorizationAlgorithm algorithm, boolean useCache, Long itemTimeoutMs, LinkedBlockingQueue<Completion> completions) {
+        var submittedAt = System.nanoTime();
+        pool.execute(() -> {
+            PrimeFactor result = null;
+            String error = null;
+            try {
+                result = primeFactorService.factor(new BigInteger(token), false, algorithm, useCache, Deadline.afterMillis(itemTimeoutMs));
+            } catch (RuntimeException e) {
+                error = e.toString();
+            } catch (Error e) {
+                // Reported as an error line too, then left to the pool to handle
+                error = e.toString();
+                throw e;
+            } finally {
+                completions.add(new Completion(index, token, result, error, System.nanoTime() - submittedAt));
+            }
+        });
+    }
+
+    private void write(OutputStream output, Completion completion, BatchStats stats) throws IOException {
+        stats.count++;
+        stats.latencyNanosTotal += completion.latencyNanos();
+        stats.latencyNanosMax = Math.max(stats.latencyNanosMax, completion.latencyNanos());
+
+        Object line;
+        if (completion.error() != null) {
+            stats.errors++;
+            var error = new LinkedHashMap<String, Object>();
+            error.put("index", completion.index());
+            error.put("input", completion.input());
+            error.put("error", completion.error());
+            line = error;
+        } else {
+            line = new Item(completion.index(), completion.result(), completion.latencyNanos() / 1_000_000.0);
+        }
+        lineWriter.writeValue(output, line);
+        output.write('\n');
+        output.flush();
+    }
+
+    // Backstop for a completion that never arrives: give up once nothing has finished for stallTimeout
+    private Completion take(LinkedBlockingQueue<Completion> completions) throws IOException {
+        try {
+            var completion = completions.poll(stallTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            if (completion == null) {
+                throw new IOException("No batch result within " + stallTimeout);
+            }
+            return completion;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batch results", e);
+        }
+    }
+
+    private static String nextToken(Reader reader) throws IOException {
+        var sb = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (Character.isWhitespace(c) || c == ',') {
+                if (sb.length() > 0) {
+                    return sb.toString();
+                }
+            } else {
+                sb.append((char) c);
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    private static final class BatchStats {
+        long count;
+        long errors;
+        long latencyNanosTotal;
+        long latencyNanosMax;
+    }
+
+}
@@ -0,0 +1,122 @@
+package jug.istanbul.springboot;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Service
+public class PrimeFactorService {
+
+    // Rough per-entry overhead of the cache node plus key, BigInteger and String headers
+    private static final int ENTRY_OVERHEAD_BYTES = 176;
+
+    private static final ThreadLocal<long[]> TABLE_FACTORS = ThreadLocal.withInitial(() -> new long[LongFactorization.MAX_FACTORS]);
+
+    private final Cache<CacheKey, String> cache;
+    private final SmallestPrimeFactorTable smallestPrimeFactorTable;
+
+    public PrimeFactorService(MeterRegistry registry, SmallestPrimeFactorTable smallestPrimeFactorTable, @Value("${primefactor.cache.maximum-weight-bytes:67108864}") long maximumWeightBytes) {
+        this.smallestPrimeFactorTable = smallestPrimeFactorTable;
+        // Every entry weighs at least ENTRY_OVERHEAD_BYTES, so the weight bound also caps the entry count
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeightBytes)
+                .weigher(PrimeFactorService::weigh)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, cache, "primeFactor");
+        Gauge.builder("primefactor.cache.weight", cache, PrimeFactorService::weightedSize)
+                .description("Approximate memory retained by the prime factor cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public PrimeFactor factor(BigInteger number, boolean logging, FactorizationAlgorithm algorithm, boolean useCache) {
+        return factor(number, logging, algorithm, useCache, Deadline.none());
+    }
+
+    /**
+     * Factors number within the deadline. Results that ran out of time carry
+     * the unfactored cofactor, are flagged incomplete and never cached.
+     * Entries are kept per algorithm, and logging requests always compute so
+     * their trace is actually logged.
+     */
+    public PrimeFactor factor(BigInteger number, boolean logging, FactorizationAlgorithm algorithm, boolean useCache, Deadline deadline) {
+        var start = Instant.now();
+        var key = useCache && !logging ? new CacheKey(number, algorithm) : null;
+        var cached = key != null ? cache.getIfPresent(key) : null;
+        var computed = cached != null ? new Computed(cached, BigInteger.ONE) : compute(number, logging, algorithm, deadline);
+        if (key != null && cached == null && computed.complete()) {
+            cache.put(key, computed.factors());
+        }
+        var stop = Instant.now();
+        var duration = Duration.between(start, stop);
+        var durationInBD = BigDecimal.valueOf(duration.toMillis()).divide(BigDecimal.valueOf(1000));
+        return new PrimeFactor(number, computed.factors(), durationInBD, cached != null, computed.complete(), computed.cofactor());
+    }
+
+    private record CacheKey(BigInteger number, FactorizationAlgorithm algorithm) {
+    }
+
+    private record Computed(String factors, BigInteger cofactor) {
+
+        boolean complete() {
+            return BigInteger.ONE.equals(cofactor);
+        }
+
+    }
+
+    private Computed compute(BigInteger number, boolean logging, FactorizationAlgorithm algorithm, Deadline deadline) {
+        if (algorithm == FactorizationAlgorithm.POLLARD_BRENT && number.signum() > 0 && number.bitLength() < Long.SIZE) {
+            var value = number.longValue();
+            return smallestPrimeFactorTable.covers(value) ? factorWithTable(value) : factorLong(value, deadline);
+        }
+        var result = switch (algorithm) {
+            case TRIAL_DIVISION -> new Factorization(logging).factors(number, deadline);
+            case POLLARD_BRENT -> new PollardBrentFactorization().factors(number, deadline);
+        };
+        return new Computed(result.factors().stream().map(n -> n.toString()).collect(Collectors.joining(" * ")), result.cofactor());
+    }
+
+    // Primitive path for inputs below 2^63, reuses the per-thread factor buffer
+    private Computed factorLong(long number, Deadline deadline) {
+        var factorization = LongFactorization.forCurrentThread();
+        factorization.factor(number, deadline);
+        return new Computed(factorization.joined(" * "), BigInteger.valueOf(factorization.cofactor()));
+    }
+
+    // Table lookups take O(log n) steps, so they never need the deadline
+    private Computed factorWithTable(long number) {
+        var factors = TABLE_FACTORS.get();
+        var count = smallestPrimeFactorTable.factor(number, factors);
+        var sb = new StringBuilder(count * 8);
+        for (var i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(" * ");
+            }
+            sb.append(factors[i]);
+        }
+        return new Computed(sb.toString(), BigInteger.ONE);
+    }
+
+    private static int weigh(CacheKey key, String factors) {
+        return ENTRY_OVERHEAD_BYTES + key.number().bitLength() / 8 + factors.length();
+    }
+
+    private static double weightedSize(Cache<CacheKey, String> cache) {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+}
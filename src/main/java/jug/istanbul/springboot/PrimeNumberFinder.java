@@ -1,22 +1,13 @@
 package jug.istanbul.springboot;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class PrimeNumberFinder {
 
     public boolean isPrime(int number) {
-        if (number <= 1) {
-            return false;
-        }
-        for (int i = 2; i < number; i++) {
-            if (number % i == 0) {
-                return false;
-            }
-        }
-        return true;
+        return Primality.isPrime(number);
     }
 
     public List<Integer> generateUnsortedRandomNumbers(int amount, int bound) {
@@ -26,8 +17,6 @@ public class PrimeNumberFinder {
             numbers.add(random.nextInt(bound));
         }
 
-        Collections.shuffle(numbers);
-
         return numbers;
     }
 
@@ -0,0 +1,201 @@
+package jug.istanbul.springboot;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Segmented Sieve of Eratosthenes over odd numbers. Every segment is a bitset
+ * small enough to stay in L1/L2 cache, and segments are sieved in parallel on
+ * the given pool. Memory use depends on the segment size and the number of
+ * base primes up to sqrt(to), never on the width of the range.
+ */
+@Component
+public class PrimeSieve {
+
+    public static final long MAX_VALUE = 100_000_000_000_000L;
+
+    // 32 KB of bits per segment, one bit per odd number
+    private static final int SEGMENT_WORDS = 32 * 1024 / Long.BYTES;
+    private static final long SEGMENT_SPAN = SEGMENT_WORDS * 64L * 2;
+
+    private static final ThreadLocal<long[]> SEGMENT_BUFFER = ThreadLocal.withInitial(() -> new long[SEGMENT_WORDS]);
+
+    private final ForkJoinPool pool;
+
+    public PrimeSieve(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    public static long segmentCount(long from, long to) {
+        return to < from ? 0 : (to - alignDown(from)) / SEGMENT_SPAN + 1;
+    }
+
+    /**
+     * Counts the primes in [from, to], sieving all segments in parallel.
+     */
+    public long count(long from, long to) {
+        checkRange(from, to);
+        if (to < 2) {
+            return 0;
+        }
+        var basePrimes = basePrimes(to);
+        var base = alignDown(from);
+        var segments = (int) segmentCount(from, to);
+        var task = pool.submit(() -> IntStream.range(0, segments).parallel()
+                .mapToLong(s -> {
+                    var bits = SEGMENT_BUFFER.get();
+                    var low = base + s * SEGMENT_SPAN;
+                    sieveSegment(low, basePrimes, bits);
+                    return countSegment(low, from, to, bits);
+                })
+                .sum());
+        try {
+            return task.get() + (from <= 2 && to >= 2 ? 1 : 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sieving", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sieve failed", e.getCause());
+        }
+    }
+
+    /**
+     * Passes every prime in [from, to] to the consumer in ascending order.
+     * Segments are sieved in parallel windows, one window per round, and
+     * consumed sequentially from the calling thread.
+     */
+    public void forEach(long from, long to, LongConsumer consumer) {
+        checkRange(from, to);
+        if (to < 2) {
+            return;
+        }
+        if (from <= 2) {
+            consumer.accept(2);
+        }
+        var basePrimes = basePrimes(to);
+        var base = alignDown(from);
+        var segments = segmentCount(from, to);
+        var windowSize = (int) Math.min(segments, pool.getParallelism() * 2L);
+        var window = new long[windowSize][SEGMENT_WORDS];
+
+        for (long first = 0; first < segments; first += windowSize) {
+            var firstLow = base + first * SEGMENT_SPAN;
+            var inWindow = (int) Math.min(windowSize, segments - first);
+            var task = pool.submit(() -> IntStream.range(0, inWindow).parallel()
+                    .forEach(w -> sieveSegment(firstLow + w * SEGMENT_SPAN, basePrimes, window[w])));
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sieving", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Sieve failed", e.getCause());
+            }
+            for (var w = 0; w < inWindow; w++) {
+                emitSegment(firstLow + w * SEGMENT_SPAN, from, to, window[w], consumer);
+            }
+        }
+    }
+
+    private static void checkRange(long from, long to) {
+        if (from < 0 || to > MAX_VALUE) {
+            throw new IllegalArgumentException("Range must be within [0, " + MAX_VALUE + "]");
+        }
+    }
+
+    private static long alignDown(long from) {
+        return from & ~1L;
+    }
+
+    /**
+     * Marks composites in the segment of odd numbers low + 1, low + 3, ...
+     * A set bit means composite.
+     */
+    private static void sieveSegment(long low, int[] basePrimes, long[] bits) {
+        Arrays.fill(bits, 0L);
+        var high = low + SEGMENT_SPAN;
+        for (var prime : basePrimes) {
+            long p = prime;
+            var square = p * p;
+            if (square >= high) {
+                break;
+            }
+            var start = square >= low ? square : ((low + p - 1) / p) * p;
+            if ((start & 1) == 0) {
+                start += p;
+            }
+            // Odd multiples only, so the bit index advances by p per step
+            for (var index = (start - low - 1) >>> 1; index < SEGMENT_WORDS * 64L; index += p) {
+                bits[(int) (index >>> 6)] |= 1L << index;
+            }
+        }
+        if (low == 0) {
+            // 1 is not prime
+            bits[0] |= 1L;
+        }
+    }
+
+    private static long countSegment(long low, long from, long to, long[] bits) {
+        long count = 0;
+        for (var word = 0; word < SEGMENT_WORDS; word++) {
+            var primes = ~bits[word];
+            while (primes != 0) {
+                var bit = Long.numberOfTrailingZeros(primes);
+                var value = low + 1 + 2L * (word * 64L + bit);
+                if (value > to) {
+                    return count;
+                }
+                if (value >= from) {
+                    count++;
+                }
+                primes &= primes - 1;
+            }
+        }
+        return count;
+    }
+
+    private static void emitSegment(long low, long from, long to, long[] bits, LongConsumer consumer) {
+        for (var word = 0; word < SEGMENT_WORDS; word++) {
+            var primes = ~bits[word];
+            while (primes != 0) {
+                var bit = Long.numberOfTrailingZeros(primes);
+                var value = low + 1 + 2L * (word * 64L + bit);
+                if (value > to) {
+                    return;
+                }
+                if (value >= from) {
+                    consumer.accept(value);
+                }
+                primes &= primes - 1;
+            }
+        }
+    }
+
+    // Odd primes up to sqrt(to), from a plain sieve over odd numbers
+    private static int[] basePrimes(long to) {
+        var limit = (int) Math.sqrt((double) to) + 1;
+        var composite = new BitSet(limit / 2 + 1);
+        var primes = new int[Math.max(16, (int) (1.3 * limit / Math.max(1, Math.log(limit))))];
+        var count = 0;
+        for (var i = 3; i <= limit; i += 2) {
+            if (!composite.get(i >>> 1)) {
+                primes[count++] = i;
+                for (var j = (long) i * i; j <= limit; j += 2L * i) {
+                    composite.set((int) (j >>> 1));
+                }
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+
+}
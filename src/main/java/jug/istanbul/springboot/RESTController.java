@@ -1,35 +1,95 @@
 
 package jug.istanbul.springboot;
 
-import static java.lang.Runtime.getRuntime;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.management.ManagementFactory;
-import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 public class RESTController {
 
-      
+    private static final int MAX_PRIMALITY_INPUTS = 10_000;
+    private static final int MAX_FAN_OUT = 1_000;
+    private static final int MAX_STRESS_SECONDS = 300;
+    // Default blends, one run of each kernel per cycle; the kernels differ in cost, see the per-kernel timeShare in the results
+    private static final String CPU_STRESS_MIX = "trig:1,integer:1,prime:1";
+    private static final String THREAD_PER_REQUEST_MIX = "trig:1,prime:1,fibonacci:1,string-hash:1,matmul:1";
+
+    private final PrimeFactorService primeFactorService;
+    private final PrimeFactorBatchService primeFactorBatchService;
+    private final PrimeSieve primeSieve;
+    private final RandomNumberGenerator randomNumberGenerator;
+    private final SimulatedLatency simulatedLatency;
+    private final WaitWithPrimeFactorService waitWithPrimeFactorService;
+    private final RuntimeInspector runtimeInspector;
+    private final GcPauseRecorder gcPauseRecorder;
+    private final CpuThrottlingMonitor cpuThrottlingMonitor;
+    private final ConcurrencyAdvisor concurrencyAdvisor;
+    private final ForkJoinPool factorizationPool;
+    private final CpuStressExecutor cpuStressExecutor;
+    private final WorkloadKernels workloadKernels;
+    private final LatencyRecorder latencyRecorder;
+    private final LittlesLawMonitor littlesLawMonitor;
+    private final AllocationEngine allocationEngine;
+    private final OffHeapStress offHeapStress;
+    private final ParallelAllocationStress parallelAllocationStress;
+
+    public RESTController(PrimeFactorService primeFactorService, PrimeFactorBatchService primeFactorBatchService, PrimeSieve primeSieve,
+            RandomNumberGenerator randomNumberGenerator, SimulatedLatency simulatedLatency, WaitWithPrimeFactorService waitWithPrimeFactorService,
+            RuntimeInspector runtimeInspector, GcPauseRecorder gcPauseRecorder, CpuThrottlingMonitor cpuThrottlingMonitor,
+            ConcurrencyAdvisor concurrencyAdvisor, ForkJoinPool factorizationPool, CpuStressExecutor cpuStressExecutor,
+            WorkloadKernels workloadKernels, LatencyRecorder latencyRecorder, LittlesLawMonitor littlesLawMonitor,
+            AllocationEngine allocationEngine, OffHeapStress offHeapStress, ParallelAllocationStress parallelAllocationStress) {
+        this.primeFactorService = primeFactorService;
+        this.primeFactorBatchService = primeFactorBatchService;
+        this.primeSieve = primeSieve;
+        this.randomNumberGenerator = randomNumberGenerator;
+        this.simulatedLatency = simulatedLatency;
+        this.waitWithPrimeFactorService = waitWithPrimeFactorService;
+        this.runtimeInspector = runtimeInspector;
+        this.gcPauseRecorder = gcPauseRecorder;
+        this.cpuThrottlingMonitor = cpuThrottlingMonitor;
+        this.concurrencyAdvisor = concurrencyAdvisor;
+        this.factorizationPool = factorizationPool;
+        this.cpuStressExecutor = cpuStressExecutor;
+        this.workloadKernels = workloadKernels;
+        this.latencyRecorder = latencyRecorder;
+        this.littlesLawMonitor = littlesLawMonitor;
+        this.allocationEngine = allocationEngine;
+        this.offHeapStress = offHeapStress;
+        this.parallelAllocationStress = parallelAllocationStress;
+    }
+
     @GetMapping("/")
     public String helloWorld() {
         return "Hello World";
@@ -38,28 +98,100 @@ public class RESTController {
       
 
     @GetMapping("/primeFactor")
-    public PrimeFactor findFactor(BigInteger number, Boolean logging) {
+    public PrimeFactor findFactor(BigInteger number, Boolean logging, FactorizationAlgorithm algorithm, Boolean cache, Long timeoutMs) {
         if (number == null) {
             number = BigInteger.valueOf(100L);
         }
-        var factorization = new Factorization(Boolean.TRUE.equals(logging));
-        var start = Instant.now();
-        var factors = factorization.factors(number).stream().map(n -> n.toString()).collect(Collectors.joining(" * "));
-        var stop = Instant.now();
-        var duration = Duration.between(start, stop);
-        var durationInBD = BigDecimal.valueOf(duration.toMillis()).divide(BigDecimal.valueOf(1000));
-        return new PrimeFactor(number, factors, durationInBD);
+        if (algorithm == null) {
+            algorithm = FactorizationAlgorithm.POLLARD_BRENT;
+        }
+        return primeFactorService.factor(number, Boolean.TRUE.equals(logging), algorithm, !Boolean.FALSE.equals(cache), Deadline.afterMillis(timeoutMs));
+    }
+
+    @PostMapping(path = "/primeFactor/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody findFactorBatch(InputStream body, FactorizationAlgorithm algorithm, Boolean cache, Long timeoutMs) {
+        var batchAlgorithm = algorithm != null ? algorithm : FactorizationAlgorithm.POLLARD_BRENT;
+        var useCache = !Boolean.FALSE.equals(cache);
+        return output -> primeFactorBatchService.factor(body, output, batchAlgorithm, useCache, timeoutMs);
+    }
+
+    @GetMapping(path = "/primes", params = "countOnly=true")
+    public Map<String, Object> countPrimes(@RequestParam(defaultValue = "0") long from, @RequestParam long to) {
+        checkPrimeRange(from, to);
+        var start = System.nanoTime();
+        var count = primeSieve.count(from, to);
+        var elapsedNanos = System.nanoTime() - start;
+
+        var results = new TreeMap<String, Object>();
+        results.put("from", from);
+        results.put("to", to);
+        results.put("count", count);
+        results.put("segments", PrimeSieve.segmentCount(from, to));
+        results.put("parallelism", primeSieve.parallelism());
+        results.put("elapsedMs", elapsedNanos / 1_000_000.0);
+        return results;
+    }
+
+    @GetMapping(path = "/primes", produces = MediaType.TEXT_PLAIN_VALUE)
+    public StreamingResponseBody primes(@RequestParam(defaultValue = "0") long from, @RequestParam long to) {
+        checkPrimeRange(from, to);
+        return output -> {
+            var buffer = new byte[64 * 1024];
+            var position = new int[1];
+            try {
+                primeSieve.forEach(from, to, prime -> {
+                    if (position[0] > buffer.length - AsciiDigits.MAX_LENGTH) {
+                        write(output, buffer, position[0]);
+                        position[0] = 0;
+                    }
+                    position[0] = AsciiDigits.append(buffer, position[0], prime);
+                    buffer[position[0]++] = '\n';
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            output.write(buffer, 0, position[0]);
+            output.flush();
+        };
+    }
+
+    private static void checkPrimeRange(long from, long to) {
+        if (from < 0 || to < from || to > PrimeSieve.MAX_VALUE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected 0 <= from <= to <= " + PrimeSieve.MAX_VALUE);
+        }
+    }
+
+    private static void write(OutputStream output, byte[] buffer, int length) {
+        try {
+            output.write(buffer, 0, length);
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @GetMapping("/isPrime")
+    public Map<String, Boolean> isPrime(@RequestParam("n") List<BigInteger> numbers) {
+        if (numbers.size() > MAX_PRIMALITY_INPUTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_PRIMALITY_INPUTS + " numbers per call");
+        }
+        var results = new LinkedHashMap<String, Boolean>();
+        for (var number : numbers) {
+            results.put(number.toString(), Primality.isPrime(number));
+        }
+        return results;
     }
 
+    // Runs the waits and factorizations concurrently; waits and factorizations fan out to that many branches each
     @GetMapping("/waitWithPrimeFactor")
-    public String networkWaitWithPrime(Integer duration, BigInteger number) {
-        var primeFactor = findFactor(number, false);
-        StringBuilder sb = new StringBuilder();
-        sb.append(networkWait(duration));
-        sb.append("\n");
-        sb.append("Found factors for " + number + ": " + primeFactor);
-        return sb.toString();
-    }      
+    public CompletableFuture<Map<String, Object>> networkWaitWithPrime(Integer duration, BigInteger number, @RequestParam(defaultValue = "1") int waits,
+            @RequestParam(defaultValue = "1") int factorizations, Boolean cache, Long timeoutMs) {
+        if (waits < 0 || factorizations < 0 || waits + factorizations == 0 || waits + factorizations > MAX_FAN_OUT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected between 1 and " + MAX_FAN_OUT + " branches in total");
+        }
+        return waitWithPrimeFactorService.run(duration != null ? duration : 0, number != null ? number : BigInteger.valueOf(100L), waits, factorizations,
+                !Boolean.FALSE.equals(cache), timeoutMs);
+    }
 
     @GetMapping("/wait")
     public String networkWait(Integer duration) {
@@ -74,150 +206,70 @@ public class RESTController {
         return "Waited " + totalWait + "ms (random wait: " + randomWait + "ms)";
     }
 
-      
+    // Same delay as /wait, but the servlet thread is released while waiting
+    @GetMapping(path = "/wait", params = "mode=async")
+    public CompletableFuture<String> networkWaitAsync(Integer duration) {
+        return simulatedLatency.waitAsync(duration != null ? duration : 0);
+    }
 
-    @GetMapping("/inspect")
-    public Map<String, Object> inspect() throws ClassNotFoundException {
-        var map = new TreeMap<String, Object>();
-        var runtime = getRuntime();
-
-        // Memory Management Beans
-        var memoryBean = ManagementFactory.getMemoryMXBean();
-        var runtimeBean = ManagementFactory.getRuntimeMXBean();
-
-        // Current GC
-        var gcIdentifier = new IdentifyCurrentGC();
-        map.put("Running GC", gcIdentifier.identifyGC().name());
-
-        var podIP = System.getenv("MY_POD_IP");
-        map.put("podIP", podIP);
-
-        // CPUs and Memory
-        map.put("availableProcessors", Integer.toString(runtime.availableProcessors()));
-        map.put("maxMemory (MB)", Long.toString(runtime.maxMemory() / 1024 / 1024));
-        map.put("totalMemory (MB)", Long.toString(runtime.totalMemory() / 1024 / 1024));
-        map.put("freeMemory (MB)", Long.toString(runtime.freeMemory() / 1024 / 1024));
-        map.put("usedMemory (MB)", Long.toString((runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024));
-
-        // Heap Memory Details
-        var heapMemory = memoryBean.getHeapMemoryUsage();
-        var nonHeapMemory = memoryBean.getNonHeapMemoryUsage();
-
-        map.put("heap.used (MB)", formatBytes(heapMemory.getUsed()));
-        map.put("heap.committed (MB)", formatBytes(heapMemory.getCommitted()));
-        map.put("heap.max (MB)", formatBytes(heapMemory.getMax()));
-        map.put("heap.init (MB)", formatBytes(heapMemory.getInit()));
-
-        // Calculate heap usage percentage
-        if (heapMemory.getMax() > 0) {
-            double heapUsagePercent = (double) heapMemory.getUsed() / heapMemory.getMax() * 100;
-            map.put("heap.usagePercent", String.format("%.2f%%", heapUsagePercent));
-        } else {
-            map.put("heap.usagePercent", "Unknown");
-        }
+    @GetMapping(path = "/wait", params = "mode=virtual")
+    public CompletableFuture<String> networkWaitVirtual(Integer duration) {
+        return simulatedLatency.waitOnVirtualThread(duration != null ? duration : 0);
+    }
 
-        map.put("nonHeap.used (MB)", formatBytes(nonHeapMemory.getUsed()));
-        map.put("nonHeap.committed (MB)", formatBytes(nonHeapMemory.getCommitted()));
-        map.put("nonHeap.max (MB)", formatBytes(nonHeapMemory.getMax()));
+      
 
-        // JVM Arguments and RAM Percentage Settings
-        var jvmArgs = runtimeBean.getInputArguments();
+    @GetMapping("/inspect")
+    public Map<String, Object> inspect() {
+        return runtimeInspector.snapshot();
+    }
 
-        String initialRAMPercentage = extractJVMArg(jvmArgs, "InitialRAMPercentage");
-        String minRAMPercentage = extractJVMArg(jvmArgs, "MinRAMPercentage");
-        String maxRAMPercentage = extractJVMArg(jvmArgs, "MaxRAMPercentage");
+      
 
-        map.put("InitialRAMPercentage", initialRAMPercentage != null ? initialRAMPercentage + "%" : "JVM Default");
-        map.put("MinRAMPercentage", minRAMPercentage != null ? minRAMPercentage + "%" : "JVM Default");
-        map.put("MaxRAMPercentage", maxRAMPercentage != null ? maxRAMPercentage + "%" : "JVM Default");
+    @GetMapping("/gcPauses")
+    public Map<String, Object> gcPauses() {
+        return gcPauseRecorder.snapshot();
+    }
 
-        // Container Memory Information
-        try {
-            // Try to read container memory limit (cgroup v1)
-            var memoryLimitPath = java.nio.file.Paths.get("/sys/fs/cgroup/memory/memory.limit_in_bytes");
-            if (java.nio.file.Files.exists(memoryLimitPath)) {
-                long containerMemoryLimit = Long.parseLong(java.nio.file.Files.readString(memoryLimitPath).trim());
-                if (containerMemoryLimit < Long.MAX_VALUE) {
-                    map.put("container.memoryLimit (MB)", formatBytes(containerMemoryLimit));
-                    if (heapMemory.getMax() > 0) {
-                        double heapVsContainerPercent = (double) heapMemory.getMax() / containerMemoryLimit * 100;
-                        map.put("heap.vsContainerPercent", String.format("%.2f%%", heapVsContainerPercent));
-                    }
-                }
-            }
+      
 
-            // Try cgroup v2
-            var memoryMaxPath = java.nio.file.Paths.get("/sys/fs/cgroup/memory.max");
-            if (java.nio.file.Files.exists(memoryMaxPath)) {
-                String memoryMaxStr = java.nio.file.Files.readString(memoryMaxPath).trim();
-                if (!"max".equals(memoryMaxStr)) {
-                    long containerMemoryLimit = Long.parseLong(memoryMaxStr);
-                    map.put("container.memoryLimit (MB)", formatBytes(containerMemoryLimit));
-                    if (heapMemory.getMax() > 0) {
-                        double heapVsContainerPercent = (double) heapMemory.getMax() / containerMemoryLimit * 100;
-                        map.put("heap.vsContainerPercent", String.format("%.2f%%", heapVsContainerPercent));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            map.put("container.memoryLimit", "Not available: " + e.getMessage());
-        }
+    @GetMapping("/latency")
+    public Map<String, Object> latency(Long expectedIntervalMs) {
+        return latencyRecorder.summary(expectedIntervalMs);
+    }
 
-        // Garbage Collector Details
-        var gcMxBeans = ManagementFactory.getGarbageCollectorMXBeans();
-        for (var gcBean : gcMxBeans) {
-            String gcName = gcBean.getName();
-            map.put("GC [" + gcName + "] collections", Long.toString(gcBean.getCollectionCount()));
-            map.put("GC [" + gcName + "] time (ms)", Long.toString(gcBean.getCollectionTime()));
-            map.put("GC [" + gcName + "] objectName", gcBean.getObjectName().toString());
+    // e.g. /latency?format=hgrm&endpoint=GET /json, plot with the HdrHistogram plotter
+    @GetMapping(path = "/latency", params = "format=hgrm", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String latencyPercentiles(@RequestParam String endpoint, @RequestParam(defaultValue = "false") boolean rolling, Long expectedIntervalMs) {
+        var distribution = latencyRecorder.percentileDistribution(endpoint, rolling, expectedIntervalMs);
+        if (distribution == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No latencies recorded for " + endpoint);
         }
-
-        // OperatingSystem MX Bean
-        var osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
-        map.put("osMXBean.getCommittedVirtualMemorySize", bytesToMBString(osBean.getCommittedVirtualMemorySize()));
-        map.put("osMXBean.getTotalMemorySize", bytesToMBString(osBean.getTotalMemorySize()));
-        map.put("osMXBean.getFreeMemorySize", bytesToMBString(osBean.getFreeMemorySize()));
-        map.put("osMXBean.getTotalSwapSpaceSize", bytesToMBString(osBean.getTotalSwapSpaceSize()));
-        map.put("osMXBean.getFreeSwapSpaceSize", bytesToMBString(osBean.getFreeSwapSpaceSize()));
-        map.put("osMXBean.getCpuLoad", String.format("%.2f%%", osBean.getCpuLoad() * 100.0));
-        map.put("osMXBean.getProcessCpuLoad", String.format("%.2f%%", osBean.getProcessCpuLoad() * 100.0));
-        map.put("osMXBean.getSystemLoadAverage", Double.toString(osBean.getSystemLoadAverage()));
-        map.put("osMXBean.getProcessCpuTime", Double.toString(osBean.getProcessCpuTime()));
-        map.put("osMXBean.getAvailableProcessors", Integer.toString(osBean.getAvailableProcessors()));
-
-        // System Properties
-        map.put("cpu_shares", System.getProperty("cpushares"));
-        map.put("user.name", System.getProperty("user.name"));
-        map.put("java.version", System.getProperty("java.version"));
-        map.put("java.vm.name", System.getProperty("java.vm.name"));
-        map.put("java.vm.version", System.getProperty("java.vm.version"));
-
-        // Runtime Information
-        map.put("jvm.uptime (ms)", Long.toString(runtimeBean.getUptime()));
-        map.put("jvm.startTime", new java.util.Date(runtimeBean.getStartTime()).toString());
-
-        return map;
+        return distribution;
     }
 
-       // Helper method to extract JVM arguments
       
 
-    private String extractJVMArg(java.util.List<String> jvmArgs, String argName) {
-        return jvmArgs.stream().filter(arg -> arg.startsWith("-XX:" + argName + "=")).map(arg -> arg.substring(("-XX:" + argName + "=").length())).findFirst().orElse(null);
+    @GetMapping("/littlesLaw")
+    public Map<String, Object> littlesLaw() {
+        return littlesLawMonitor.report();
     }
 
-       // Enhanced formatBytes method
       
 
-    private String formatBytes(long bytes) {
-        if (bytes < 0) return "Unknown";
-        return String.format("%.2f", bytes / 1024.0 / 1024.0);
+    @GetMapping("/cpuThrottling")
+    public Map<String, Object> cpuThrottling() {
+        return cpuThrottlingMonitor.report();
     }
 
       
 
-    private String bytesToMBString(long bytes) {
-        return Long.toString(bytes / 1024 / 1024) + " MB";
+    @GetMapping("/concurrencyAdvice")
+    public Map<String, Object> concurrencyAdvice() {
+        var pools = new LinkedHashMap<String, Integer>();
+        pools.put("factorizationPool", factorizationPool.getParallelism());
+        pools.put("cpuStress", cpuStressExecutor.poolSize());
+        return concurrencyAdvisor.explain(pools);
     }
 
       
@@ -236,201 +288,155 @@ public class RESTController {
 
       
 
-    @GetMapping("/generateRandomNumbers")
-    @ResponseBody
-    List<Integer> generateRandomNumbers(int amount, int bound) {
-        var random = ThreadLocalRandom.current();
-        var numbers = new ArrayList<Integer>(amount);
-        for (int i = 0; i < amount; i++) {
-            numbers.add(random.nextInt(bound));
+    @GetMapping(path = "/generateRandomNumbers", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<StreamingResponseBody> generateRandomNumbers(int amount, int bound, Long seed) {
+        return randomNumbers(amount, bound, seed, RandomNumberGenerator.Format.JSON);
+    }
+
+    @GetMapping(path = "/generateRandomNumbers", params = "format=binary", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    ResponseEntity<StreamingResponseBody> generateRandomNumbersBinary(int amount, int bound, Long seed) {
+        return randomNumbers(amount, bound, seed, RandomNumberGenerator.Format.BINARY);
+    }
+
+    private ResponseEntity<StreamingResponseBody> randomNumbers(int amount, int bound, Long seed, RandomNumberGenerator.Format format) {
+        if (amount < 0 || bound <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected amount >= 0 and bound > 0");
         }
-        return numbers;
+        var actualSeed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+        var response = ResponseEntity.ok().header("X-Random-Seed", Long.toString(actualSeed));
+        if (format == RandomNumberGenerator.Format.BINARY) {
+            response.contentType(MediaType.APPLICATION_OCTET_STREAM).contentLength((long) amount * Integer.BYTES);
+        } else {
+            response.contentType(MediaType.APPLICATION_JSON);
+        }
+        return response.body(output -> randomNumberGenerator.write(amount, bound, actualSeed, format, output));
     }
 
       
 
     @GetMapping("/cpuStress")
-    public Map<String, Object> cpuStress() {
-        final int finalThreadCount = 10;
-        final int finalDurationSeconds = 10;
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> cpuStress(Integer threads, @RequestParam(defaultValue = "10") int durationSeconds,
+            @RequestParam(defaultValue = CPU_STRESS_MIX) String mix) {
+        final int finalThreadCount = threads != null ? threads : concurrencyAdvisor.cpuBoundThreads();
+        final int finalDurationSeconds = durationSeconds;
+        final var workloadMix = parseMix(mix);
+        checkStressParameters(finalThreadCount, finalDurationSeconds);
 
-        var startTime = Instant.now();
         var results = new TreeMap<String, Object>();
         results.put("threadCount", finalThreadCount);
         results.put("durationSeconds", finalDurationSeconds);
         results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        results.put("poolSize", cpuStressExecutor.poolSize());
 
-        // Create a thread pool
-        ExecutorService executor = Executors.newFixedThreadPool(finalThreadCount);
-
-        try {
-            // Submit CPU-intensive tasks to each thread
-            List<CompletableFuture<Map<String, Object>>> futures = IntStream.range(0, finalThreadCount).mapToObj(threadId -> CompletableFuture.supplyAsync(() -> performCpuIntensiveWork(threadId, finalDurationSeconds), executor)).collect(Collectors.toList());
-
-            // Wait for all threads to complete
-            CompletableFuture<Void> allTasks = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-
-            // Collect results from all threads
-            allTasks.get(finalDurationSeconds + 5, TimeUnit.SECONDS);
-
-            List<Map<String, Object>> threadResults = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
-
-            results.put("threadResults", threadResults);
-
-            // Calculate totals
+        return runOnStressPool(results, finalThreadCount, finalDurationSeconds, threadId -> {
+            var threadResult = workloadKernels.run(workloadMix, Duration.ofSeconds(finalDurationSeconds));
+            threadResult.put("threadId", threadId);
+            return threadResult;
+        }, (threadResults, executionMs) -> {
             long totalOperations = threadResults.stream().mapToLong(r -> (Long) r.get("operations")).sum();
-
-            var endTime = Instant.now();
-            var actualDuration = Duration.between(startTime, endTime);
-
             results.put("totalOperations", totalOperations);
-            results.put("actualDurationMs", actualDuration.toMillis());
-            results.put("operationsPerSecond", totalOperations * 1000.0 / actualDuration.toMillis());
-
-        } catch (Exception e) {
-            results.put("error", e.getMessage());
-        } finally {
-            executor.shutdown();
-        }
-
-        return results;
+            results.put("operationsPerSecond", totalOperations * 1000.0 / Math.max(1, executionMs));
+        });
     }
 
       
 
-    private Map<String, Object> performCpuIntensiveWork(int threadId, int durationSeconds) {
-        var result = new TreeMap<String, Object>();
-        result.put("threadId", threadId);
-
-        var startTime = Instant.now();
-        var endTime = startTime.plusSeconds(durationSeconds);
-
-        long operations = 0;
-        var random = ThreadLocalRandom.current();
-
-        // Perform CPU-intensive operations until time is up
-        while (Instant.now().isBefore(endTime)) {
-            // Pure CPU-bound operations - no I/O or yielding
-
-            // 1. Mathematical calculations (no memory allocation)
-            double x = random.nextDouble() * 1000;
-            for (int i = 0; i < 10000; i++) {
-                x = Math.sin(x) * Math.cos(x) + Math.sqrt(x);
-                x = Math.pow(x, 0.5) + Math.log(Math.abs(x) + 1);
-            }
-
-            // 2. Integer operations (no memory allocation)
-            long sum = 0;
-            for (int i = 0; i < 1000; i++) {
-                sum += i * i * i;
-                sum = sum % 1000000;
-            }
-
-            // 3. Prime checking (minimal memory allocation)
-            long num = random.nextLong(1000000, 2000000);
-            isPrimeFast(num); // Just call for CPU work, ignore result
-
-            operations++;
-
-            // Remove Thread.yield() - no voluntary CPU yielding
+    // Independent n x n multiplications per thread, GFLOPS summed over threads
+    @GetMapping("/matrixStress")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> matrixStress(@RequestParam(defaultValue = "512") int size, Integer threads,
+            @RequestParam(defaultValue = "5") int durationSeconds) {
+        final int finalThreadCount = threads != null ? threads : concurrencyAdvisor.cpuBoundThreads();
+        checkStressParameters(finalThreadCount, durationSeconds);
+        if (size < 1 || size > MatrixKernel.MAX_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected 1 <= size <= " + MatrixKernel.MAX_SIZE);
         }
 
-        var actualEndTime = Instant.now();
-        var duration = Duration.between(startTime, actualEndTime);
-
-        result.put("operations", operations);
-        result.put("durationMs", duration.toMillis());
-        result.put("operationsPerSecond", operations * 1000.0 / duration.toMillis());
-
-        return result;
+        var results = new TreeMap<String, Object>();
+        results.put("size", size);
+        results.put("threadCount", finalThreadCount);
+        results.put("durationSeconds", durationSeconds);
+        results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        results.put("poolSize", cpuStressExecutor.poolSize());
+
+        return runOnStressPool(results, finalThreadCount, durationSeconds, threadId -> {
+            var threadResult = MatrixKernel.run(size, Duration.ofSeconds(durationSeconds));
+            threadResult.put("threadId", threadId);
+            return threadResult;
+        }, (threadResults, executionMs) -> {
+            results.put("totalMultiplications", threadResults.stream().mapToLong(r -> (Long) r.get("multiplications")).sum());
+            results.put("gflops", threadResults.stream().mapToDouble(r -> (Double) r.get("gflops")).sum());
+        });
     }
 
       
 
-    private boolean isPrimeFast(long number) {
-        if (number <= 1) return false;
-        if (number <= 3) return true;
-        if (number % 2 == 0 || number % 3 == 0) return false;
-
-        for (long i = 5; i * i <= number; i += 6) {
-            if (number % i == 0 || number % (i + 2) == 0) {
-                return false;
-            }
+    private void checkStressParameters(int threadCount, int durationSeconds) {
+        if (threadCount < 1 || threadCount > cpuStressExecutor.capacity() || durationSeconds < 1 || durationSeconds > MAX_STRESS_SECONDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Expected 1 <= threads <= " + cpuStressExecutor.capacity() + " and 1 <= durationSeconds <= " + MAX_STRESS_SECONDS);
         }
-        return true;
     }
 
-      
-
-    private Map<String, Object> performExtremeCpuWork(int threadId, int durationSeconds) {
-        var result = new TreeMap<String, Object>();
-        result.put("threadId", threadId);
-
-        var startTime = Instant.now();
-        var endTime = startTime.plusSeconds(durationSeconds);
-
-        long operations = 0;
-        var random = ThreadLocalRandom.current();
-
-        // Extremely CPU-intensive operations - no breaks, no yielding
-        while (Instant.now().isBefore(endTime)) {
-            // Tight CPU loops with no I/O or yielding
-
-            // 1. Intensive mathematical calculations
-            double x = random.nextDouble() * 1000;
-            for (int i = 0; i < 50000; i++) {  // Much more iterations
-                x = Math.sin(x) * Math.cos(x) + Math.sqrt(x);
-                x = Math.pow(x, 0.5) + Math.log(Math.abs(x) + 1);
-                x = Math.atan(x) + Math.exp(x / 1000);
-            }
-
-            // 2. Prime number calculations (CPU intensive)
-            long num = random.nextLong(1000000, 5000000);
-            isPrimeFast(num);
-
-            // 3. Hash calculations
-            for (int i = 0; i < 1000; i++) {
-                String data = String.valueOf(random.nextLong());
-                data.hashCode();
+    /**
+     * Runs work once per thread on the shared stress pool and fills in the
+     * timings common to all stress endpoints, or answers 503 with Retry-After
+     * when the pool cannot take that many tasks right now.
+     */
+    private CompletableFuture<ResponseEntity<Map<String, Object>>> runOnStressPool(Map<String, Object> results, int threadCount, int durationSeconds,
+            IntFunction<Map<String, Object>> work, BiConsumer<List<Map<String, Object>>, Long> summarize) {
+        var startNanos = System.nanoTime();
+        CompletableFuture<List<CpuStressExecutor.TaskResult>> tasks;
+        try {
+            tasks = cpuStressExecutor.submit(threadCount, durationSeconds, work);
+        } catch (CpuStressExecutor.SaturatedException e) {
+            results.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(e.retryAfterSeconds()))
+                    .body(results));
+        }
+
+        return tasks.thenApply(taskResults -> {
+            var threadResults = new ArrayList<Map<String, Object>>(taskResults.size());
+            long maxQueueDelayNanos = 0;
+            long firstStart = Long.MAX_VALUE;
+            long lastEnd = Long.MIN_VALUE;
+            for (var task : taskResults) {
+                var threadResult = task.result();
+                threadResult.put("queueDelayMs", TimeUnit.NANOSECONDS.toMillis(task.queueDelayNanos()));
+                threadResults.add(threadResult);
+                maxQueueDelayNanos = Math.max(maxQueueDelayNanos, task.queueDelayNanos());
+                firstStart = Math.min(firstStart, task.startNanos());
+                lastEnd = Math.max(lastEnd, task.endNanos());
             }
+            var executionMs = TimeUnit.NANOSECONDS.toMillis(lastEnd - firstStart);
 
-            // 4. Fibonacci calculations
-            fibonacciIterative(random.nextInt(1000, 5000));
-
-            operations++;
-
-            // NO Thread.yield() - keep CPU busy continuously
-        }
-
-        var actualEndTime = Instant.now();
-        var duration = Duration.between(startTime, actualEndTime);
-
-        result.put("operations", operations);
-        result.put("durationMs", duration.toMillis());
-        result.put("operationsPerSecond", operations * 1000.0 / duration.toMillis());
-
-        return result;
+            results.put("threadResults", threadResults);
+            // Time waiting for a pool thread is reported apart from time spent computing
+            results.put("queueDelayMs", TimeUnit.NANOSECONDS.toMillis(maxQueueDelayNanos));
+            results.put("executionMs", executionMs);
+            results.put("actualDurationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            summarize.accept(threadResults, executionMs);
+            return ResponseEntity.ok(results);
+        });
     }
 
       
 
-    private long fibonacciIterative(int n) {
-        if (n <= 1) return n;
-        long a = 0, b = 1;
-        for (int i = 2; i <= n; i++) {
-            long temp = a + b;
-            a = b;
-            b = temp;
+    private WorkloadMix parseMix(String mix) {
+        try {
+            return workloadKernels.parse(mix);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
-        return b;
     }
 
       
 
     @GetMapping("/threadPerRequest")
-    public Map<String, Object> threadPerRequestCpuWork(Integer workDurationSeconds) {
+    public Map<String, Object> threadPerRequestCpuWork(Integer workDurationSeconds, @RequestParam(defaultValue = THREAD_PER_REQUEST_MIX) String mix) {
         // Default value
         final int workDuration = (workDurationSeconds != null && workDurationSeconds > 0) ? workDurationSeconds : 8;
+        final var workloadMix = parseMix(mix);
 
         var startTime = Instant.now();
         var results = new TreeMap<String, Object>();
@@ -439,7 +445,12 @@ public class RESTController {
         results.put("currentThread", Thread.currentThread().getName());
 
         // Perform CPU-heavy work directly in the request thread (lean approach)
-        Map<String, Object> workResult = performDedicatedCpuWork(0, workDuration);
+        var workStart = Instant.now();
+        Map<String, Object> workResult = workloadKernels.run(workloadMix, Duration.ofSeconds(workDuration));
+        workResult.put("requestId", 0);
+        workResult.put("threadName", Thread.currentThread().getName());
+        workResult.put("startTime", workStart.toString());
+        workResult.put("endTime", Instant.now().toString());
 
         var endTime = Instant.now();
         var totalDuration = Duration.between(startTime, endTime);
@@ -451,111 +462,82 @@ public class RESTController {
         return results;
     }
 
-      /**
-       *      * Performs dedicated CPU-intensive work in a single thread.
-       *      * This simulates the work that would be done per request in a
-       * thread-per-request model.
-       *      
-       */
       
 
-    private Map<String, Object> performDedicatedCpuWork(int requestId, int durationSeconds) {
-        var result = new TreeMap<String, Object>();
-        result.put("requestId", requestId);
-        result.put("threadName", Thread.currentThread().getName());
-
-        var startTime = Instant.now();
-        var endTime = startTime.plusSeconds(durationSeconds);
-
-        long operations = 0;
-        var random = ThreadLocalRandom.current();
-
-        // CPU-intensive work loop - no yielding or sleeping
-        while (Instant.now().isBefore(endTime)) {
-            // 1. Complex mathematical operations
-            double x = random.nextDouble() * 1000;
-            for (int i = 0; i < 25000; i++) {
-                x = Math.sin(x) * Math.cos(x) + Math.sqrt(Math.abs(x));
-                x = Math.pow(x, 0.3) + Math.log(Math.abs(x) + 1);
-                x = Math.atan(x) + Math.exp(x / 10000);
-            }
-
-            // 2. Prime number checking (CPU-bound)
-            long primeCandidate = random.nextLong(100000, 1000000);
-            boolean isPrime = isPrimeFast(primeCandidate);
-
-            // 3. Fibonacci calculation
-            int fibN = random.nextInt(1000, 3000);
-            long fibResult = fibonacciIterative(fibN);
-
-            // 4. Hash computation for additional CPU load
-            String data = String.valueOf(random.nextLong()) + fibResult + isPrime;
-            // Use hash result to prevent optimization
-            if (data.hashCode() > Integer.MAX_VALUE) {
-                // Will never execute, but prevents dead code elimination
-                operations--;
-            }
-
-            // 5. Matrix-like operations (simulated with arrays)
-            performMatrixOperations(random);
-
-            operations++;
-
-            // Deliberately NO Thread.yield() - keep CPU maximally busy
-        }
-
-        var actualEndTime = Instant.now();
-        var duration = Duration.between(startTime, actualEndTime);
-
-        result.put("operations", operations);
-        result.put("durationMs", duration.toMillis());
-        result.put("operationsPerSecond", operations * 1000.0 / duration.toMillis());
-        result.put("startTime", startTime.toString());
-        result.put("endTime", actualEndTime.toString());
-
-        return result;
+    @GetMapping("/memoryLoad")
+    public Map<String, Object> memoryLoad() {
+        return allocationEngine.report();
     }
 
-      /**
-       *      * Simulates matrix operations for additional CPU load
-       *      
-       */
-      
+    // Parameters left out keep their current value, e.g. POST /memoryLoad/start?rateMbPerSecond=200&objectSize=uniform:1KB-64KB
+    @PostMapping("/memoryLoad/start")
+    public Map<String, Object> startMemoryLoad(Double rateMbPerSecond, String objectSize, Double survivalRatio, Long lifetimeMs) {
+        var current = allocationEngine.profile();
+        try {
+            allocationEngine.start(new AllocationEngine.Profile(rateMbPerSecond != null ? rateMbPerSecond : current.rateMbPerSecond(),
+                    objectSize != null ? AllocationEngine.SizeDistribution.parse(objectSize) : current.objectSize(),
+                    survivalRatio != null ? survivalRatio : current.survivalRatio(),
+                    lifetimeMs != null ? Duration.ofMillis(lifetimeMs) : current.lifetime()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return allocationEngine.report();
+    }
 
-    private void performMatrixOperations(ThreadLocalRandom random) {
-        final int size = 50; // Small matrix to avoid memory issues but still CPU intensive
+    @PostMapping("/memoryLoad/stop")
+    public Map<String, Object> stopMemoryLoad() {
+        allocationEngine.stop();
+        return allocationEngine.report();
+    }
 
-        // Create and populate matrices
-        double[][] matrixA = new double[size][size];
-        double[][] matrixB = new double[size][size];
+    @GetMapping("/memoryFootprint")
+    public Map<String, Object> memoryFootprint() {
+        return MemoryFootprint.snapshot();
+    }
 
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                matrixA[i][j] = random.nextDouble();
-                matrixB[i][j] = random.nextDouble();
-            }
-        }
+    @GetMapping("/offHeapStress")
+    public Map<String, Object> offHeapStress(@RequestParam(defaultValue = "direct") String mode, @RequestParam(defaultValue = "50") double rateMbPerSecond,
+            @RequestParam(defaultValue = "1MB") String bufferSize, @RequestParam(defaultValue = "5") int retentionSeconds,
+            @RequestParam(defaultValue = "10") int durationSeconds, @RequestParam(defaultValue = "false") boolean gcAfter) {
+        OffHeapStress.Mode stressMode;
+        long bufferBytes;
+        try {
+            stressMode = OffHeapStress.Mode.parse(mode);
+            bufferBytes = DataSize.parse(bufferSize).toBytes();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (!(rateMbPerSecond > 0) || rateMbPerSecond > 10_000 || bufferBytes < 4096 || bufferBytes > offHeapStress.maxRetainedBytes()
+                || bufferBytes > Integer.MAX_VALUE || retentionSeconds < 0 || durationSeconds < 1 || durationSeconds > MAX_STRESS_SECONDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected 0 < rateMbPerSecond <= 10000, 4KB <= bufferSize <= off-heap.max-retained, "
+                    + "retentionSeconds >= 0 and 1 <= durationSeconds <= " + MAX_STRESS_SECONDS);
+        }
+        return offHeapStress.run(stressMode, rateMbPerSecond, (int) bufferBytes, Duration.ofSeconds(retentionSeconds), Duration.ofSeconds(durationSeconds),
+                gcAfter);
+    }
 
-        // Perform matrix multiplication (CPU intensive)
-        double[][] result = new double[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                for (int k = 0; k < size; k++) {
-                    result[i][j] += matrixA[i][k] * matrixB[k][j];
-                }
-            }
+    // e.g. /parallelAllocationStress?threads=8&mix=small:8,graph:2;large:1 runs 1, 2, 4 and 8 threads, every other one allocating large arrays
+    @GetMapping("/parallelAllocationStress")
+    public Map<String, Object> parallelAllocationStress(@RequestParam(defaultValue = "4") int threads, @RequestParam(defaultValue = "true") boolean scaling,
+            @RequestParam(defaultValue = "small:8,medium:2,graph:2,large:1") String mix, @RequestParam(defaultValue = "0.01") double survivalRatio,
+            @RequestParam(defaultValue = "4096") int retainedObjects, @RequestParam(defaultValue = "5") int durationSeconds) {
+        List<ParallelAllocationStress.ObjectMix> mixes;
+        try {
+            mixes = ParallelAllocationStress.ObjectMix.parseAll(mix);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
-
-        // Calculate a simple checksum to prevent optimization
-        double checksum = 0;
-        for (int i = 0; i < size; i++) {
-            checksum += result[i][0]; // Just use first column to avoid full iteration
+        var steps = ParallelAllocationStress.threadCounts(Math.max(1, threads), scaling).size();
+        if (threads < 1 || threads > parallelAllocationStress.maxThreads() || !(survivalRatio >= 0 && survivalRatio <= 1) || retainedObjects < 0
+                || retainedObjects > 1_000_000 || durationSeconds < 1 || steps * durationSeconds > MAX_STRESS_SECONDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected 1 <= threads <= " + parallelAllocationStress.maxThreads()
+                    + ", 0 <= survivalRatio <= 1, 0 <= retainedObjects <= 1000000 and 1 <= durationSeconds with all steps within " + MAX_STRESS_SECONDS
+                    + " seconds");
         }
-
-        // Use checksum in a way that compiler cannot optimize away
-        if (checksum < -Double.MAX_VALUE) {
-            // Impossible condition but prevents dead code elimination
-            throw new IllegalStateException("Matrix computation error");
+        try {
+            return parallelAllocationStress.run(threads, scaling, mixes, survivalRatio, retainedObjects, Duration.ofSeconds(durationSeconds));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
         }
     }
 
@@ -570,6 +552,7 @@ public class RESTController {
         results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
 
         // Get GC info before
+        var gcWindow = gcPauseRecorder.mark();
         var gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
         Map<String, Long> gcCountsBefore = new HashMap<>();
         Map<String, Long> gcTimesBefore = new HashMap<>();
@@ -638,6 +621,7 @@ public class RESTController {
         long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
 
         results.put("gcStats", gcStats);
+        results.put("gcPauses", gcWindow.delta());
         results.put("memoryUsedBeforeMB", memoryBefore / 1024 / 1024);
         results.put("memoryUsedAfterMB", memoryAfter / 1024 / 1024);
         results.put("actualDurationMs", Duration.between(startTime, endTime).toMillis());
@@ -654,6 +638,7 @@ public class RESTController {
         results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
 
         // Get GC info before
+        var gcWindow = gcPauseRecorder.mark();
         var gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
         Map<String, Long> gcCountsBefore = new HashMap<>();
         Map<String, Long> gcTimesBefore = new HashMap<>();
@@ -724,6 +709,7 @@ public class RESTController {
         long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
 
         results.put("gcStats", gcStats);
+        results.put("gcPauses", gcWindow.delta());
         results.put("memoryUsedBeforeMB", memoryBefore / 1024 / 1024);
         results.put("memoryUsedAfterMB", memoryAfter / 1024 / 1024);
         results.put("actualDurationMs", Duration.between(startTime, endTime).toMillis());
@@ -740,6 +726,7 @@ public class RESTController {
         results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
 
         // Get GC info before
+        var gcWindow = gcPauseRecorder.mark();
         var gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
         Map<String, Long> gcCountsBefore = new HashMap<>();
         Map<String, Long> gcTimesBefore = new HashMap<>();
@@ -820,6 +807,7 @@ public class RESTController {
         long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
 
         results.put("gcStats", gcStats);
+        results.put("gcPauses", gcWindow.delta());
         results.put("memoryUsedBeforeMB", memoryBefore / 1024 / 1024);
         results.put("memoryUsedAfterMB", memoryAfter / 1024 / 1024);
         results.put("actualDurationMs", Duration.between(startTime, endTime).toMillis());
@@ -837,6 +825,7 @@ public class RESTController {
         List<Object> longLivedObjects = new ArrayList<>();
 
         // Get GC info before
+        var gcWindow = gcPauseRecorder.mark();
         var gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
         Map<String, Long> gcCountsBefore = new HashMap<>();
         Map<String, Long> gcTimesBefore = new HashMap<>();
@@ -953,6 +942,7 @@ public class RESTController {
         result.put("timestamp", System.currentTimeMillis());
         result.put("allocationsPerSecond", (double) iterations / ((endTime - startTime) / 1000.0));
         result.put("gcStats", gcStats);
+        result.put("gcPauses", gcWindow.delta());
 
         return result;
     }
@@ -0,0 +1,160 @@
+package jug.istanbul.springboot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates random ints in fixed-size int[] chunks and streams them out chunk
+ * by chunk, so memory stays bounded no matter how many numbers are requested.
+ * Chunks in a window are filled in parallel, each by its own SplittableRandom
+ * split off the seeded root in chunk order, so the output for a given seed is
+ * the same regardless of the pool size.
+ */
+@Component
+public class RandomNumberGenerator {
+
+    public enum Format {
+        JSON, BINARY;
+    }
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public RandomNumberGenerator(ForkJoinPool factorizationPool) {
+        this.pool = factorizationPool;
+    }
+
+    public void write(int amount, int bound, long seed, Format format, OutputStream output) throws IOException {
+        var root = new SplittableRandom(seed);
+        var chunks = (amount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        var windowSize = Math.max(1, Math.min(chunks, pool.getParallelism() * 2));
+        var window = new int[windowSize][CHUNK_SIZE];
+        var generators = new SplittableRandom[windowSize];
+        var encoder = format == Format.BINARY ? new BinaryEncoder(output) : new JsonEncoder(output);
+
+        encoder.start();
+        for (var first = 0; first < chunks; first += windowSize) {
+            var inWindow = Math.min(windowSize, chunks - first);
+            for (var w = 0; w < inWindow; w++) {
+                generators[w] = root.split();
+            }
+            var firstChunk = first;
+            fill(inWindow, w -> {
+                var length = chunkLength(amount, firstChunk + w);
+                var random = generators[w];
+                var chunk = window[w];
+                for (var i = 0; i < length; i++) {
+                    chunk[i] = random.nextInt(bound);
+                }
+            });
+            for (var w = 0; w < inWindow; w++) {
+                encoder.write(window[w], chunkLength(amount, first + w));
+            }
+        }
+        encoder.finish();
+    }
+
+    private void fill(int inWindow, IntConsumer filler) throws IOException {
+        var task = pool.submit(() -> IntStream.range(0, inWindow).parallel().forEach(filler));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating random numbers", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Random number generation failed", e.getCause());
+        }
+    }
+
+    private static int chunkLength(int amount, int chunk) {
+        return Math.min(CHUNK_SIZE, amount - chunk * CHUNK_SIZE);
+    }
+
+    private interface Encoder {
+        void start() throws IOException;
+
+        void write(int[] chunk, int length) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    // Compact JSON array, the same shape the boxed List<Integer> used to produce
+    private static final class JsonEncoder implements Encoder {
+        private final OutputStream output;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private boolean first = true;
+
+        JsonEncoder(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void start() {
+            buffer[position++] = '[';
+        }
+
+        @Override
+        public void write(int[] chunk, int length) throws IOException {
+            for (var i = 0; i < length; i++) {
+                if (position > buffer.length - AsciiDigits.MAX_LENGTH) {
+                    output.write(buffer, 0, position);
+                    position = 0;
+                }
+                if (!first) {
+                    buffer[position++] = ',';
+                }
+                first = false;
+                position = AsciiDigits.append(buffer, position, chunk[i]);
+            }
+            output.write(buffer, 0, position);
+            output.flush();
+            position = 0;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            buffer[position++] = ']';
+            output.write(buffer, 0, position);
+            output.flush();
+        }
+    }
+
+    // Raw little-endian int32 values, 4 bytes per number
+    private static final class BinaryEncoder implements Encoder {
+        private final OutputStream output;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        BinaryEncoder(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void write(int[] chunk, int length) throws IOException {
+            buffer.clear();
+            buffer.asIntBuffer().put(chunk, 0, length);
+            output.write(buffer.array(), 0, length * Integer.BYTES);
+            output.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            output.flush();
+        }
+    }
+
+}
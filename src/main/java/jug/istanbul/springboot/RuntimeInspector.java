@@ -0,0 +1,222 @@
+package jug.istanbul.springboot;
+
+import static java.lang.Runtime.getRuntime;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backs /inspect. Facts that cannot change while the JVM runs (GC type, JVM
+ * arguments, container limits, system properties) are computed once, the
+ * rest is sampled by a background thread every inspect.refresh-interval. Each
+ * call returns the latest prebuilt snapshot, so polling the endpoint costs
+ * no MXBean or cgroup reads no matter how often it happens.
+ */
+@Component
+public class RuntimeInspector implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RuntimeInspector.class);
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final RuntimeMXBean runtimeBean = ManagementFactory.getRuntimeMXBean();
+    private final com.sun.management.OperatingSystemMXBean osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private final List<GarbageCollectorMXBean> gcMxBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final Map<String, Object> staticFacts;
+    private final ScheduledExecutorService refresher;
+    private volatile Map<String, Object> snapshot;
+
+    public RuntimeInspector(@Value("${inspect.refresh-interval:1s}") Duration refreshInterval) throws ClassNotFoundException {
+        if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+            throw new IllegalArgumentException("inspect.refresh-interval must be positive");
+        }
+        this.staticFacts = staticFacts();
+        this.snapshot = sample();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "inspect-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var millis = refreshInterval.toMillis();
+        refresher.scheduleAtFixedRate(this::refresh, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The latest snapshot, immutable and shared between callers.
+     */
+    public Map<String, Object> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    private void refresh() {
+        try {
+            snapshot = sample();
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic task, keep serving the previous snapshot instead
+            logger.warn("Failed to refresh the /inspect snapshot", e);
+        }
+    }
+
+    private Map<String, Object> staticFacts() throws ClassNotFoundException {
+        var map = new TreeMap<String, Object>();
+        var runtime = getRuntime();
+
+        // Current GC
+        map.put("Running GC", new IdentifyCurrentGC().identifyGC().name());
+        map.put("podIP", System.getenv("MY_POD_IP"));
+        map.put("maxMemory (MB)", Long.toString(runtime.maxMemory() / 1024 / 1024));
+
+        var heapMemory = memoryBean.getHeapMemoryUsage();
+        var nonHeapMemory = memoryBean.getNonHeapMemoryUsage();
+        map.put("heap.max (MB)", formatBytes(heapMemory.getMax()));
+        map.put("heap.init (MB)", formatBytes(heapMemory.getInit()));
+        map.put("nonHeap.max (MB)", formatBytes(nonHeapMemory.getMax()));
+
+        // JVM Arguments and RAM Percentage Settings
+        var jvmArgs = runtimeBean.getInputArguments();
+
+        String initialRAMPercentage = extractJVMArg(jvmArgs, "InitialRAMPercentage");
+        String minRAMPercentage = extractJVMArg(jvmArgs, "MinRAMPercentage");
+        String maxRAMPercentage = extractJVMArg(jvmArgs, "MaxRAMPercentage");
+
+        map.put("InitialRAMPercentage", initialRAMPercentage != null ? initialRAMPercentage + "%" : "JVM Default");
+        map.put("MinRAMPercentage", minRAMPercentage != null ? minRAMPercentage + "%" : "JVM Default");
+        map.put("MaxRAMPercentage", maxRAMPercentage != null ? maxRAMPercentage + "%" : "JVM Default");
+
+        // Container Memory Information
+        try {
+            var containerMemoryLimit = containerMemoryLimit();
+            if (containerMemoryLimit > 0) {
+                map.put("container.memoryLimit (MB)", formatBytes(containerMemoryLimit));
+                if (heapMemory.getMax() > 0) {
+                    double heapVsContainerPercent = (double) heapMemory.getMax() / containerMemoryLimit * 100;
+                    map.put("heap.vsContainerPercent", String.format("%.2f%%", heapVsContainerPercent));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            map.put("container.memoryLimit", "Not available: " + e.getMessage());
+        }
+
+        for (var gcBean : gcMxBeans) {
+            map.put("GC [" + gcBean.getName() + "] objectName", gcBean.getObjectName().toString());
+        }
+
+        map.put("osMXBean.getTotalMemorySize", bytesToMBString(osBean.getTotalMemorySize()));
+        map.put("osMXBean.getTotalSwapSpaceSize", bytesToMBString(osBean.getTotalSwapSpaceSize()));
+
+        // System Properties
+        map.put("cpu_shares", System.getProperty("cpushares"));
+        map.put("user.name", System.getProperty("user.name"));
+        map.put("java.version", System.getProperty("java.version"));
+        map.put("java.vm.name", System.getProperty("java.vm.name"));
+        map.put("java.vm.version", System.getProperty("java.vm.version"));
+        map.put("jvm.startTime", new java.util.Date(runtimeBean.getStartTime()).toString());
+        return map;
+    }
+
+    private Map<String, Object> sample() {
+        var map = new TreeMap<String, Object>(staticFacts);
+        var runtime = getRuntime();
+
+        // CPUs and Memory
+        map.put("availableProcessors", Integer.toString(runtime.availableProcessors()));
+        map.put("totalMemory (MB)", Long.toString(runtime.totalMemory() / 1024 / 1024));
+        map.put("freeMemory (MB)", Long.toString(runtime.freeMemory() / 1024 / 1024));
+        map.put("usedMemory (MB)", Long.toString((runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024));
+
+        // Heap Memory Details
+        var heapMemory = memoryBean.getHeapMemoryUsage();
+        var nonHeapMemory = memoryBean.getNonHeapMemoryUsage();
+
+        map.put("heap.used (MB)", formatBytes(heapMemory.getUsed()));
+        map.put("heap.committed (MB)", formatBytes(heapMemory.getCommitted()));
+
+        // Calculate heap usage percentage
+        if (heapMemory.getMax() > 0) {
+            double heapUsagePercent = (double) heapMemory.getUsed() / heapMemory.getMax() * 100;
+            map.put("heap.usagePercent", String.format("%.2f%%", heapUsagePercent));
+        } else {
+            map.put("heap.usagePercent", "Unknown");
+        }
+
+        map.put("nonHeap.used (MB)", formatBytes(nonHeapMemory.getUsed()));
+        map.put("nonHeap.committed (MB)", formatBytes(nonHeapMemory.getCommitted()));
+
+        // Garbage Collector Details
+        for (var gcBean : gcMxBeans) {
+            String gcName = gcBean.getName();
+            map.put("GC [" + gcName + "] collections", Long.toString(gcBean.getCollectionCount()));
+            map.put("GC [" + gcName + "] time (ms)", Long.toString(gcBean.getCollectionTime()));
+        }
+
+        // OperatingSystem MX Bean
+        map.put("osMXBean.getCommittedVirtualMemorySize", bytesToMBString(osBean.getCommittedVirtualMemorySize()));
+        map.put("osMXBean.getFreeMemorySize", bytesToMBString(osBean.getFreeMemorySize()));
+        map.put("osMXBean.getFreeSwapSpaceSize", bytesToMBString(osBean.getFreeSwapSpaceSize()));
+        map.put("osMXBean.getCpuLoad", String.format("%.2f%%", osBean.getCpuLoad() * 100.0));
+        map.put("osMXBean.getProcessCpuLoad", String.format("%.2f%%", osBean.getProcessCpuLoad() * 100.0));
+        map.put("osMXBean.getSystemLoadAverage", Double.toString(osBean.getSystemLoadAverage()));
+        map.put("osMXBean.getProcessCpuTime", Double.toString(osBean.getProcessCpuTime()));
+        map.put("osMXBean.getAvailableProcessors", Integer.toString(osBean.getAvailableProcessors()));
+
+        // Runtime Information
+        map.put("jvm.uptime (ms)", Long.toString(runtimeBean.getUptime()));
+        map.put("snapshot.sampledAt", Instant.now().toString());
+        return Collections.unmodifiableMap(map);
+    }
+
+    // cgroup v2 wins over v1 when both are mounted, 0 when there is no limit
+    static long containerMemoryLimit() throws IOException {
+        var memoryMaxPath = Path.of("/sys/fs/cgroup/memory.max");
+        if (Files.exists(memoryMaxPath)) {
+            String memoryMaxStr = Files.readString(memoryMaxPath).trim();
+            return "max".equals(memoryMaxStr) ? 0 : Long.parseLong(memoryMaxStr);
+        }
+        var memoryLimitPath = Path.of("/sys/fs/cgroup/memory/memory.limit_in_bytes");
+        if (Files.exists(memoryLimitPath)) {
+            long containerMemoryLimit = Long.parseLong(Files.readString(memoryLimitPath).trim());
+            // Unlimited reads as Long.MAX_VALUE rounded down to the page size
+            return containerMemoryLimit < Long.MAX_VALUE / 2 ? containerMemoryLimit : 0;
+        }
+        return 0;
+    }
+
+    private static String extractJVMArg(List<String> jvmArgs, String argName) {
+        return jvmArgs.stream().filter(arg -> arg.startsWith("-XX:" + argName + "=")).map(arg -> arg.substring(("-XX:" + argName + "=").length())).findFirst().orElse(null);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) return "Unknown";
+        return String.format("%.2f", bytes / 1024.0 / 1024.0);
+    }
+
+    private static String bytesToMBString(long bytes) {
+        return Long.toString(bytes / 1024 / 1024) + " MB";
+    }
+
+}
@@ -0,0 +1,106 @@
+package jug.istanbul.springboot;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Simulated downstream latency that does not hold a request thread while
+ * waiting. Waits complete from a small shared timer, or from a virtual thread
+ * per wait when the JVM supports them (Java 21+).
+ */
+@Component
+public class SimulatedLatency implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedLatency.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService virtualThreads;
+
+    public SimulatedLatency(@Value("${wait.scheduler-threads:1}") int schedulerThreads) {
+        var threadNumber = new AtomicInteger();
+        var timer = new ScheduledThreadPoolExecutor(schedulerThreads, runnable -> {
+            var thread = new Thread(runnable, "wait-timer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Cancelled waits leave the timer queue right away instead of lingering until their delay expires
+        timer.setRemoveOnCancelPolicy(true);
+        this.scheduler = timer;
+        this.virtualThreads = newVirtualThreadExecutor();
+    }
+
+    public boolean virtualThreadsSupported() {
+        return virtualThreads != null;
+    }
+
+    /**
+     * Completes after duration plus a 2-50 ms random wait, the same delay the
+     * blocking /wait uses, without occupying any thread in the meantime.
+     */
+    public CompletableFuture<String> waitAsync(int duration) {
+        var randomWait = ThreadLocalRandom.current().nextInt(2, 50);
+        var result = new CompletableFuture<String>();
+        var timer = scheduler.schedule(() -> result.complete(message(duration, randomWait)), duration + randomWait, TimeUnit.MILLISECONDS);
+        // Cancelling the future also drops the pending timer
+        result.whenComplete((message, failure) -> timer.cancel(false));
+        return result;
+    }
+
+    /**
+     * Sleeps on a virtual thread, falling back to the shared timer when the
+     * JVM has no virtual threads.
+     */
+    public CompletableFuture<String> waitOnVirtualThread(int duration) {
+        if (virtualThreads == null) {
+            return waitAsync(duration);
+        }
+        var randomWait = ThreadLocalRandom.current().nextInt(2, 50);
+        var result = new CompletableFuture<String>();
+        var task = virtualThreads.submit(() -> {
+            try {
+                Thread.sleep(duration + randomWait);
+                result.complete(message(duration, randomWait));
+            } catch (InterruptedException e) {
+                result.cancel(false);
+            }
+        });
+        result.whenComplete((message, failure) -> task.cancel(true));
+        return result;
+    }
+
+    static String message(int duration, int randomWait) {
+        return "Waited " + (duration + randomWait) + "ms (random wait: " + randomWait + "ms)";
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        if (virtualThreads != null) {
+            virtualThreads.shutdownNow();
+        }
+    }
+
+    // Looked up reflectively because the build targets Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads not available on Java {}, mode=virtual uses the shared timer", Runtime.version().feature());
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package jug.istanbul.springboot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Smallest-prime-factor table for odd numbers below a configurable bound,
+ * persisted to disk and memory-mapped read-only. Instances on the same host
+ * share the mapped pages through the OS page cache, and restarts reuse the
+ * file instead of sieving again. The table is off unless
+ * primefactor.spf-table.enabled is set, so startup writes no file by default.
+ *
+ * File layout: an 8 byte magic, the bound as a long, then one char per odd
+ * number n holding its smallest prime factor, or 0 when n is prime. Chars are
+ * enough because composites below 2^32 have a smallest factor below 2^16.
+ */
+@Component
+public class SmallestPrimeFactorTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmallestPrimeFactorTable.class);
+
+    // Keeps the whole file inside a single MappedByteBuffer
+    public static final long MAX_BOUND = 2_000_000_000L;
+
+    private static final long MAGIC = 0x5350465441424C31L; // "SPFTABL1"
+    private static final int HEADER_BYTES = 16;
+
+    private final long bound;
+    private final Path path;
+    private volatile CharBuffer table;
+
+    public SmallestPrimeFactorTable(@Value("${primefactor.spf-table.enabled:false}") boolean enabled,
+            @Value("${primefactor.spf-table.bound:10000000}") long bound,
+            @Value("${primefactor.spf-table.path:}") String path) {
+        if (bound < 3 || bound > MAX_BOUND) {
+            throw new IllegalArgumentException("primefactor.spf-table.bound must be within [3, " + MAX_BOUND + "]");
+        }
+        this.bound = bound;
+        this.path = path.isBlank() ? Path.of(System.getProperty("java.io.tmpdir"), "four-steps-spf-" + bound + ".bin") : Path.of(path);
+
+        if (enabled) {
+            // Large bounds take a while to sieve, lookups fall back to Pollard-Brent until the table is mapped
+            var loader = new Thread(this::load, "spf-table-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    public long bound() {
+        return bound;
+    }
+
+    public boolean covers(long n) {
+        return n > 0 && n < bound && table != null;
+    }
+
+    /**
+     * Writes the prime factors of n in ascending order into out and returns
+     * how many there are. Only valid when {@link #covers(long)} is true.
+     */
+    public int factor(long n, long[] out) {
+        var spf = table;
+        var count = 0;
+        var twos = Long.numberOfTrailingZeros(n);
+        for (var i = 0; i < twos; i++) {
+            out[count++] = 2;
+        }
+        n >>= twos;
+        while (n > 1) {
+            long p = spf.get((int) (n >>> 1));
+            if (p == 0) {
+                out[count++] = n;
+                break;
+            }
+            out[count++] = p;
+            n /= p;
+        }
+        return count;
+    }
+
+    private void load() {
+        try {
+            var start = System.nanoTime();
+            if (!isValid(path)) {
+                build();
+            }
+            try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                table = mapped.position(HEADER_BYTES).slice().asCharBuffer();
+            }
+            logger.info("Smallest prime factor table for n < {} mapped from {} in {} ms", bound, path, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Smallest prime factor table unavailable, falling back to Pollard-Brent", e);
+        }
+    }
+
+    private boolean isValid(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != fileSize()) {
+            return false;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            header.flip();
+            return header.getLong() == MAGIC && header.getLong() == bound;
+        }
+    }
+
+    /**
+     * Sieves straight into a mapped temp file so the table never lives on the
+     * heap, then moves it into place. The magic is written last, so a crashed
+     * build is never mistaken for a complete table.
+     */
+    private void build() throws IOException {
+        var start = System.nanoTime();
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        var temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize());
+                var spf = mapped.slice(HEADER_BYTES, (int) (fileSize() - HEADER_BYTES)).asCharBuffer();
+                for (long p = 3; p * p < bound; p += 2) {
+                    if (spf.get((int) (p >>> 1)) != 0) {
+                        continue;
+                    }
+                    for (var m = p * p; m < bound; m += 2 * p) {
+                        var index = (int) (m >>> 1);
+                        if (spf.get(index) == 0) {
+                            spf.put(index, (char) p);
+                        }
+                    }
+                }
+                mapped.force();
+                mapped.putLong(8, bound);
+                mapped.putLong(0, MAGIC);
+                mapped.force();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Built smallest prime factor table for n < {} in {} ms", bound, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private long fileSize() {
+        return HEADER_BYTES + ((bound + 1) / 2) * Character.BYTES;
+    }
+
+}
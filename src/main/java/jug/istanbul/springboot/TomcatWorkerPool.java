@@ -0,0 +1,193 @@
+package jug.istanbul.springboot;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.threads.TaskQueue;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives Tomcat's connector the same worker pool it would create itself, as
+ * AbstractEndpoint.createExecutor() does: a ThreadPoolExecutor sized by
+ * server.tomcat.threads.* on a TaskQueue bounded by
+ * server.tomcat.threads.max-queue-capacity, unbounded unless set. Every dispatched socket is tracked twice: while it waits in
+ * the task queue for a free worker, and while a worker processes it. Left
+ * alone when something else, e.g. spring.threads.virtual.enabled, already set
+ * an executor.
+ *
+ * With concurrency.apply-request-threads=true, every
+ * concurrency.resize-interval the pool's maximum is set to
+ * {@link ConcurrencyAdvisor}'s request thread recommendation for the requests
+ * of that interval, never above server.tomcat.threads.max nor below the core
+ * threads. Off by default, the pool then stays as configured.
+ */
+@Component
+public class TomcatWorkerPool implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TomcatWorkerPool.class);
+
+    private final FlowTracker queue;
+    private final FlowTracker workers;
+    private final ConcurrencyAdvisor concurrencyAdvisor;
+    private final boolean applyRequestThreads;
+    private final Duration resizeInterval;
+    private final ScheduledExecutorService resizer;
+    private final int maxQueueCapacity;
+    private volatile InstrumentedExecutor executor;
+    private volatile int configuredMaxThreads;
+    // Only touched by the resizer thread
+    private EndpointProfiler.Totals lastTotals;
+
+    public TomcatWorkerPool(ConcurrencyAdvisor concurrencyAdvisor, @Value("${latency.interval:5s}") Duration interval,
+            @Value("${latency.window:1m}") Duration window, @Value("${concurrency.apply-request-threads:false}") boolean applyRequestThreads,
+            @Value("${concurrency.resize-interval:30s}") Duration resizeInterval,
+            @Value("${server.tomcat.threads.max-queue-capacity:" + Integer.MAX_VALUE + "}") int maxQueueCapacity) {
+        if (maxQueueCapacity < 1) {
+            throw new IllegalArgumentException("server.tomcat.threads.max-queue-capacity must be positive");
+        }
+        if (resizeInterval.isNegative() || resizeInterval.isZero()) {
+            throw new IllegalArgumentException("concurrency.resize-interval must be positive");
+        }
+        var intervals = (int) Math.max(1, window.toNanos() / interval.toNanos());
+        this.queue = new FlowTracker(intervals);
+        this.workers = new FlowTracker(intervals);
+        this.concurrencyAdvisor = concurrencyAdvisor;
+        this.applyRequestThreads = applyRequestThreads;
+        this.resizeInterval = resizeInterval;
+        this.maxQueueCapacity = maxQueueCapacity;
+        this.resizer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "tomcat-pool-resizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        // Connector customizers run after Spring Boot's own, which apply server.tomcat.threads.*
+        factory.addConnectorCustomizers(connector -> {
+            if (!(connector.getProtocolHandler() instanceof AbstractProtocol<?> protocol) || protocol.getExecutor() != null) {
+                logger.info("Tomcat connector already has an executor, worker pool metrics will be empty");
+                return;
+            }
+            var taskQueue = new TaskQueue(maxQueueCapacity);
+            var threadFactory = new TaskThreadFactory(protocol.getName().replace("\"", "") + "-exec-", true, protocol.getThreadPriority());
+            var instrumented = new InstrumentedExecutor(protocol.getMinSpareThreads(), protocol.getMaxThreads(), taskQueue, threadFactory);
+            taskQueue.setParent(instrumented);
+            protocol.setExecutor(instrumented);
+            configuredMaxThreads = protocol.getMaxThreads();
+            executor = instrumented;
+            if (applyRequestThreads) {
+                lastTotals = concurrencyAdvisor.requestTotals();
+                var millis = resizeInterval.toMillis();
+                resizer.scheduleWithFixedDelay(this::resize, millis, millis, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    public boolean instrumented() {
+        return executor != null;
+    }
+
+    public int maxThreads() {
+        var current = executor;
+        return current != null ? current.getMaximumPoolSize() : -1;
+    }
+
+    public int poolSize() {
+        var current = executor;
+        return current != null ? current.getPoolSize() : -1;
+    }
+
+    public int busyThreads() {
+        var current = executor;
+        return current != null ? current.getActiveCount() : -1;
+    }
+
+    /**
+     * Sockets handed over by the poller, waiting for a worker.
+     */
+    FlowTracker queue() {
+        return queue;
+    }
+
+    FlowTracker workers() {
+        return workers;
+    }
+
+    @Override
+    public void destroy() {
+        resizer.shutdownNow();
+        var current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private void resize() {
+        var current = executor;
+        if (current == null) {
+            return;
+        }
+        try {
+            var totals = concurrencyAdvisor.requestTotals();
+            var recommended = concurrencyAdvisor.recommendedRequestThreads(totals.minus(lastTotals));
+            lastTotals = totals;
+            // An idle interval says nothing about the load, keep the current size
+            if (recommended.isEmpty()) {
+                return;
+            }
+            var target = Math.max(current.getCorePoolSize(), Math.min(configuredMaxThreads, recommended.getAsInt()));
+            if (target != current.getMaximumPoolSize()) {
+                logger.info("Resizing Tomcat worker pool from {} to {} threads", current.getMaximumPoolSize(), target);
+                current.setMaximumPoolSize(target);
+            }
+            concurrencyAdvisor.requestThreadsApplied(target);
+        } catch (RuntimeException e) {
+            // A failing resize must not cancel the schedule
+            logger.warn("Resizing the Tomcat worker pool failed", e);
+        }
+    }
+
+    private final class InstrumentedExecutor extends ThreadPoolExecutor {
+
+        private InstrumentedExecutor(int corePoolSize, int maximumPoolSize, BlockingQueue<Runnable> workQueue, TaskThreadFactory threadFactory) {
+            // Keep-alive as in Tomcat's AbstractEndpoint.createExecutor()
+            super(corePoolSize, maximumPoolSize, 60, TimeUnit.SECONDS, workQueue, threadFactory);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            var queued = System.nanoTime();
+            queue.arrive(queued, queued);
+            try {
+                super.execute(() -> {
+                    var start = System.nanoTime();
+                    queue.depart(queued, start);
+                    workers.arrive(start, start);
+                    try {
+                        command.run();
+                    } finally {
+                        workers.depart(start, System.nanoTime());
+                    }
+                });
+            } catch (RuntimeException e) {
+                queue.abandon(queued, System.nanoTime());
+                throw e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package jug.istanbul.springboot;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs the simulated downstream waits and the factorizations of
+ * /waitWithPrimeFactor side by side instead of one after the other, so the
+ * response time is the slowest branch rather than the sum of all of them.
+ * When a branch fails or runs out of time the remaining ones are cancelled:
+ * pending waits drop their timers and factorizations stop at their next
+ * deadline check.
+ */
+@Service
+public class WaitWithPrimeFactorService {
+
+    private final PrimeFactorService primeFactorService;
+    private final SimulatedLatency simulatedLatency;
+    private final ForkJoinPool pool;
+
+    public WaitWithPrimeFactorService(PrimeFactorService primeFactorService, SimulatedLatency simulatedLatency, ForkJoinPool factorizationPool) {
+        this.primeFactorService = primeFactorService;
+        this.simulatedLatency = simulatedLatency;
+        this.pool = factorizationPool;
+    }
+
+    public CompletableFuture<Map<String, Object>> run(int duration, BigInteger number, int waits, int factorizations, boolean useCache, Long timeoutMs) {
+        var start = System.nanoTime();
+        var deadline = Deadline.cancellable(timeoutMs);
+        var branches = new ArrayList<Branch>(waits + factorizations);
+
+        for (var i = 0; i < waits; i++) {
+            var wait = simulatedLatency.waitAsync(duration);
+            if (deadline.isBounded()) {
+                wait.orTimeout(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            }
+            branches.add(new Branch("wait-" + i, wait));
+        }
+        for (var i = 0; i < factorizations; i++) {
+            var factorization = CompletableFuture.supplyAsync(() -> primeFactorService.factor(number, false, FactorizationAlgorithm.POLLARD_BRENT, useCache, deadline), pool);
+            branches.add(new Branch("factor-" + i, factorization));
+        }
+
+        // Listeners go on only once every branch exists, so a fast failure always sees the full list to cancel
+        var recorded = new CompletableFuture<?>[branches.size()];
+        for (var i = 0; i < recorded.length; i++) {
+            var branch = branches.get(i);
+            recorded[i] = branch.future.whenComplete((result, failure) -> {
+                branch.finish(start, result, failure);
+                if (!"completed".equals(branch.status)) {
+                    deadline.cancel();
+                    branches.forEach(other -> other.future.cancel(false));
+                }
+            });
+        }
+
+        return CompletableFuture.allOf(recorded).handle((ignored, failure) -> summary(start, branches, duration, number, timeoutMs));
+    }
+
+    private static Map<String, Object> summary(long start, List<Branch> branches, int duration, BigInteger number, Long timeoutMs) {
+        var totalNanos = System.nanoTime() - start;
+        var report = new LinkedHashMap<String, Object>();
+        report.put("duration", duration);
+        report.put("number", number);
+        report.put("timeoutMs", timeoutMs);
+
+        long busyNanos = 0;
+        Branch criticalPath = null;
+        var status = "completed";
+        var details = new ArrayList<Map<String, Object>>(branches.size());
+        for (var branch : branches) {
+            busyNanos += branch.elapsedNanos;
+            if (criticalPath == null || branch.elapsedNanos > criticalPath.elapsedNanos) {
+                criticalPath = branch;
+            }
+            if (!"completed".equals(branch.status) && !"cancelled".equals(branch.status)) {
+                status = branch.status;
+            }
+            details.add(branch.toMap());
+        }
+        report.put("status", status);
+        report.put("totalMs", millis(totalNanos));
+        // What the old sequential implementation would have spent for the same branches
+        report.put("sequentialMs", millis(busyNanos));
+        report.put("criticalPath", criticalPath != null ? criticalPath.name : null);
+        report.put("branches", details);
+        return report;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Branch {
+        private final String name;
+        private final CompletableFuture<?> future;
+        private volatile long elapsedNanos;
+        private volatile String status;
+        private volatile Object result;
+
+        Branch(String name, CompletableFuture<?> future) {
+            this.name = name;
+            this.future = future;
+        }
+
+        void finish(long start, Object value, Throwable failure) {
+            elapsedNanos = System.nanoTime() - start;
+            var cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (cause == null) {
+                result = value;
+                status = value instanceof PrimeFactor primeFactor && !primeFactor.complete() ? "deadline" : "completed";
+            } else if (cause instanceof CancellationException) {
+                status = "cancelled";
+            } else if (cause instanceof TimeoutException) {
+                status = "deadline";
+            } else {
+                status = "failed";
+                result = cause.toString();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            var map = new LinkedHashMap<String, Object>();
+            map.put("branch", name);
+            map.put("status", status);
+            map.put("elapsedMs", millis(elapsedNanos));
+            map.put("result", result);
+            return map;
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package jug.istanbul.springboot;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final EndpointProfiler endpointProfiler;
+    private final LittlesLawMonitor littlesLawMonitor;
+
+    public WebConfig(EndpointProfiler endpointProfiler, LittlesLawMonitor littlesLawMonitor) {
+        this.endpointProfiler = endpointProfiler;
+        this.littlesLawMonitor = littlesLawMonitor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(endpointProfiler);
+        registry.addInterceptor(littlesLawMonitor);
+    }
+
+}
@@ -0,0 +1,23 @@
+package jug.istanbul.springboot;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One kind of CPU work the stress endpoints can mix. Every Spring bean
+ * implementing this interface is picked up by {@link WorkloadKernels} next to
+ * the built-in kernels.
+ */
+public interface WorkloadKernel {
+
+    /**
+     * Name used in mix specifications such as trig:2,prime:1.
+     */
+    String name();
+
+    /**
+     * Runs one operation and returns a value derived from it, which the
+     * caller folds into a checksum so the JIT cannot drop the work.
+     */
+    long run(ThreadLocalRandom random);
+
+}
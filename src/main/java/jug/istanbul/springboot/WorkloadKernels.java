@@ -0,0 +1,246 @@
+package jug.istanbul.springboot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the CPU kernels behind /cpuStress and /threadPerRequest, and
+ * the loop that runs a weighted mix of them until a deadline. The loop reads
+ * System.nanoTime() once per operation, both to time the kernel that just ran
+ * and to check the deadline, so it allocates nothing while it spins.
+ */
+@Component
+public class WorkloadKernels {
+
+    private final Map<String, WorkloadKernel> kernels = new LinkedHashMap<>();
+
+    // Sink for the kernel checksums, keeps the JIT from removing the work
+    private volatile long sink;
+
+    public WorkloadKernels(List<WorkloadKernel> additionalKernels) {
+        register(new Trig());
+        register(new IntegerArithmetic());
+        register(new Prime());
+        register(new Fibonacci());
+        register(new StringHash());
+        register(new MatrixMultiply());
+        additionalKernels.forEach(this::register);
+    }
+
+    public Map<String, WorkloadKernel> kernels() {
+        return Collections.unmodifiableMap(kernels);
+    }
+
+    /**
+     * Parses a mix such as trig:2,prime:1. A kernel without a weight counts
+     * once.
+     */
+    public WorkloadMix parse(String spec) {
+        var selected = new ArrayList<WorkloadKernel>();
+        var weights = new ArrayList<Integer>();
+        for (var part : spec.split(",")) {
+            var trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            var separator = trimmed.indexOf(':');
+            var name = separator < 0 ? trimmed : trimmed.substring(0, separator).trim();
+            var kernel = kernels.get(name);
+            if (kernel == null) {
+                throw new IllegalArgumentException("Unknown kernel '" + name + "', expected one of " + kernels.keySet());
+            }
+            int weight;
+            try {
+                weight = separator < 0 ? 1 : Integer.parseInt(trimmed.substring(separator + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight in '" + trimmed + "'");
+            }
+            if (weight < 0 || weight > WorkloadMix.MAX_WEIGHT) {
+                throw new IllegalArgumentException("Weight of " + name + " must be within [0, " + WorkloadMix.MAX_WEIGHT + "]");
+            }
+            if (weight > 0) {
+                selected.add(kernel);
+                weights.add(weight);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("Mix '" + spec + "' selects no kernel");
+        }
+        return WorkloadMix.of(spec, selected, weights);
+    }
+
+    /**
+     * Runs the mix on the calling thread until duration has elapsed and
+     * reports the overall and per-kernel operation rates. Per-kernel rates use
+     * the time spent in that kernel alone.
+     */
+    public Map<String, Object> run(WorkloadMix mix, Duration duration) {
+        var schedule = mix.schedule();
+        var mixKernels = mix.kernels();
+        var operations = new long[mixKernels.size()];
+        var nanos = new long[mixKernels.size()];
+        var random = ThreadLocalRandom.current();
+        var deadline = Deadline.after(duration);
+
+        long checksum = 0;
+        var start = System.nanoTime();
+        var now = start;
+        for (var slot = 0; !deadline.expired(now); slot = slot + 1 == schedule.length ? 0 : slot + 1) {
+            var k = schedule[slot];
+            checksum += mixKernels.get(k).run(random);
+            var after = System.nanoTime();
+            nanos[k] += after - now;
+            operations[k]++;
+            now = after;
+        }
+        sink = checksum;
+
+        var elapsedNanos = now - start;
+        long totalOperations = 0;
+        var perKernel = new LinkedHashMap<String, Object>();
+        for (var k = 0; k < mixKernels.size(); k++) {
+            totalOperations += operations[k];
+            var kernel = new LinkedHashMap<String, Object>();
+            kernel.put("operations", operations[k]);
+            kernel.put("timeMs", nanos[k] / 1_000_000);
+            kernel.put("operationsPerSecond", nanos[k] > 0 ? operations[k] * 1e9 / nanos[k] : 0.0);
+            kernel.put("timeShare", elapsedNanos > 0 ? (double) nanos[k] / elapsedNanos : 0.0);
+            perKernel.put(mixKernels.get(k).name(), kernel);
+        }
+
+        var result = new TreeMap<String, Object>();
+        result.put("mix", mix.spec());
+        result.put("operations", totalOperations);
+        result.put("durationMs", elapsedNanos / 1_000_000);
+        result.put("operationsPerSecond", elapsedNanos > 0 ? totalOperations * 1e9 / elapsedNanos : 0.0);
+        result.put("kernels", perKernel);
+        return result;
+    }
+
+    private void register(WorkloadKernel kernel) {
+        if (kernels.putIfAbsent(kernel.name(), kernel) != null) {
+            throw new IllegalStateException("Duplicate workload kernel " + kernel.name());
+        }
+    }
+
+    // Transcendental math, no allocation
+    private static final class Trig implements WorkloadKernel {
+        @Override
+        public String name() {
+            return "trig";
+        }
+
+        @Override
+        public long run(ThreadLocalRandom random) {
+            double x = random.nextDouble() * 1000;
+            for (int i = 0; i < 10000; i++) {
+                x = Math.sin(x) * Math.cos(x) + Math.sqrt(x);
+                x = Math.pow(x, 0.5) + Math.log(Math.abs(x) + 1);
+            }
+            return Double.doubleToRawLongBits(x);
+        }
+    }
+
+    // Multiply and modulo on longs
+    private static final class IntegerArithmetic implements WorkloadKernel {
+        @Override
+        public String name() {
+            return "integer";
+        }
+
+        @Override
+        public long run(ThreadLocalRandom random) {
+            long sum = random.nextLong(1000);
+            for (long i = 0; i < 1000; i++) {
+                sum += i * i * i;
+                sum = sum % 1000000;
+            }
+            return sum;
+        }
+    }
+
+    // Primality of 100 consecutive odd numbers from a random start
+    private static final class Prime implements WorkloadKernel {
+        @Override
+        public String name() {
+            return "prime";
+        }
+
+        @Override
+        public long run(ThreadLocalRandom random) {
+            long candidate = random.nextLong(1000000, 5000000) | 1;
+            long primes = 0;
+            for (int i = 0; i < 100; i++, candidate += 2) {
+                if (Primality.isPrime(candidate)) {
+                    primes++;
+                }
+            }
+            return primes;
+        }
+    }
+
+    // Iterative Fibonacci, wrapping around on overflow
+    private static final class Fibonacci implements WorkloadKernel {
+        @Override
+        public String name() {
+            return "fibonacci";
+        }
+
+        @Override
+        public long run(ThreadLocalRandom random) {
+            int n = random.nextInt(1000, 5000);
+            long a = 0, b = 1;
+            for (int i = 2; i <= n; i++) {
+                long temp = a + b;
+                a = b;
+                b = temp;
+            }
+            return b;
+        }
+    }
+
+    // Formats random longs and hashes them, allocation-heavy like request parsing
+    private static final class StringHash implements WorkloadKernel {
+        @Override
+        public String name() {
+            return "string-hash";
+        }
+
+        @Override
+        public long run(ThreadLocalRandom random) {
+            long hash = 0;
+            for (int i = 0; i < 1000; i++) {
+                hash = 31 * hash + String.valueOf(random.nextLong()).hashCode();
+            }
+            return hash;
+        }
+    }
+
+    // 50x50 double matrix product on the calling thread's reused buffers
+    private static final class MatrixMultiply implements WorkloadKernel {
+        private static final int SIZE = 50;
+
+        @Override
+        public String name() {
+            return "matmul";
+        }
+
+        @Override
+        public long run(ThreadLocalRandom random) {
+            var buffers = MatrixKernel.buffers(SIZE);
+            // Perturb one operand element so consecutive products differ
+            buffers.a[random.nextInt(SIZE * SIZE)] = random.nextDouble();
+            MatrixKernel.multiply(buffers.a, buffers.b, buffers.c, SIZE);
+            return Double.doubleToRawLongBits(buffers.c[0]);
+        }
+    }
+
+}
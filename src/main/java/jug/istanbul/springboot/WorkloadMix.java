@@ -0,0 +1,25 @@
+package jug.istanbul.springboot;
+
+import java.util.List;
+
+/**
+ * Weighted selection of kernels, run round-robin so that each kernel gets
+ * weight operations per cycle, e.g. trig:2,prime:1 runs trig, trig, prime.
+ */
+public record WorkloadMix(String spec, List<WorkloadKernel> kernels, int[] schedule) {
+
+    public static final int MAX_WEIGHT = 100;
+
+    static WorkloadMix of(String spec, List<WorkloadKernel> kernels, List<Integer> weights) {
+        var length = weights.stream().mapToInt(Integer::intValue).sum();
+        var schedule = new int[length];
+        var position = 0;
+        for (var k = 0; k < weights.size(); k++) {
+            for (var w = 0; w < weights.get(k); w++) {
+                schedule[position++] = k;
+            }
+        }
+        return new WorkloadMix(spec, List.copyOf(kernels), schedule);
+    }
+
+}